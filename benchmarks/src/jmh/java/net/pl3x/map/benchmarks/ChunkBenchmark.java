@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import net.pl3x.map.core.world.Chunk;
+import net.pl3x.map.core.world.ChunkTagReader;
+import net.querz.nbt.tag.CompoundTag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The steps of loading a chunk after decompression, each timed per chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkBenchmark {
+    private static final int CHUNKS = 64;
+
+    private final byte[][] nbt = new byte[CHUNKS][];
+    private final CompoundTag[] tags = new CompoundTag[CHUNKS];
+    private final Chunk[] chunks = new Chunk[CHUNKS];
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        for (int i = 0; i < CHUNKS; i++) {
+            this.nbt[i] = Fixtures.chunkTag(i & 7, i >> 3);
+            this.tags[i] = read(this.nbt[i]);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createChunks(RegionState state) {
+        for (int i = 0; i < CHUNKS; i++) {
+            this.chunks[i] = Chunk.create(state.world, state.region, this.tags[i], i);
+        }
+    }
+
+    /**
+     * Parse the uncompressed nbt, skipping everything the renderers do not need.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void decode(Blackhole blackhole) throws IOException {
+        for (byte[] bytes : this.nbt) {
+            blackhole.consume(read(bytes));
+        }
+    }
+
+    /**
+     * Turn the parsed nbt into a chunk, decoding its sections and palettes.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void create(RegionState state, Blackhole blackhole) {
+        for (int i = 0; i < CHUNKS; i++) {
+            blackhole.consume(Chunk.create(state.world, state.region, this.tags[i], i));
+        }
+    }
+
+    /**
+     * Find the top block, fluid and glass of every column of a freshly created chunk.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void populate(Blackhole blackhole) {
+        for (Chunk chunk : this.chunks) {
+            blackhole.consume(chunk.populate());
+        }
+    }
+
+    private static CompoundTag read(byte[] bytes) throws IOException {
+        return new ChunkTagReader(new DataInputStream(new ByteArrayInputStream(bytes))).read();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import net.pl3x.map.core.util.Colors;
+import net.pl3x.map.core.world.Biome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per pixel color math, and the biome blending that samples the neighbouring columns.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColorsBenchmark {
+    private static final int COLORS = 4096;
+    private static final int PATCH = 64;
+
+    @Param({"0", "3", "7"})
+    public int blend;
+
+    private final int[] colors0 = new int[COLORS];
+    private final int[] colors1 = new int[COLORS];
+    private Biome biome;
+
+    @Setup(Level.Trial)
+    public void setup(RegionState state) {
+        SplittableRandom random = new SplittableRandom(Fixtures.SEED);
+        for (int i = 0; i < COLORS; i++) {
+            this.colors0[i] = random.nextInt();
+            this.colors1[i] = random.nextInt();
+        }
+        state.world.getConfig().RENDER_BIOME_BLEND = this.blend;
+        this.biome = state.world.getBiomeRegistry().get(Fixtures.BIOMES[0]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLORS)
+    public int blend() {
+        int result = 0;
+        for (int i = 0; i < COLORS; i++) {
+            result ^= Colors.blend(this.colors0[i], this.colors1[i]);
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLORS)
+    public int mix() {
+        int result = 0;
+        for (int i = 0; i < COLORS; i++) {
+            result ^= Colors.mix(this.colors0[i], this.colors1[i]);
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATCH * PATCH)
+    public int grassColor(RegionState state) {
+        int result = 0;
+        for (int z = 0; z < PATCH; z++) {
+            for (int x = 0; x < PATCH; x++) {
+                result ^= Colors.getGrassColor(state.region, this.biome, 0x91BD59, x, z);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATCH * PATCH)
+    public int waterColor(RegionState state) {
+        int result = 0;
+        for (int z = 0; z < PATCH; z++) {
+            for (int x = 0; x < PATCH; x++) {
+                result ^= Colors.getWaterColor(state.region, this.biome, x, z);
+            }
+        }
+        return result;
+    }
+}
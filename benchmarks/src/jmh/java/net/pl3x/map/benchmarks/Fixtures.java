@@ -0,0 +1,389 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Generates synthetic 1.20 region files, so the benchmarks do not depend on a world save.
+ * <p>
+ * The terrain is a smooth height field with grass, sand, water, trees and flowers over a few
+ * biomes, so every renderer finds something to do. The same seed always gives the same bytes.
+ */
+public final class Fixtures {
+    public static final long SEED = 0x5EED_1CE5L;
+    public static final int DATA_VERSION = 3465; // 1.20.1
+    public static final int MIN_Y = -64;
+    public static final int MAX_Y = 320;
+    public static final int SEA_LEVEL = 62;
+
+    public static final String[] BIOMES = {
+            "minecraft:plains",
+            "minecraft:forest",
+            "minecraft:desert",
+            "minecraft:swamp",
+            "minecraft:ocean"
+    };
+
+    private static final int SECTOR_SIZE = 4096;
+
+    // nbt tag types
+    private static final int BYTE = 1;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int STRING = 8;
+    private static final int LIST = 9;
+    private static final int COMPOUND = 10;
+    private static final int LONG_ARRAY = 12;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Write a region file with all 1024 chunks generated.
+     *
+     * @param regionDir region directory of the world
+     * @param regionX   region x coordinate
+     * @param regionZ   region z coordinate
+     * @return the written region file
+     * @throws IOException if the file could not be written
+     */
+    public static @NotNull Path writeRegion(@NotNull Path regionDir, int regionX, int regionZ) throws IOException {
+        Files.createDirectories(regionDir);
+        Path file = regionDir.resolve("r." + regionX + "." + regionZ + ".mca");
+
+        ByteBuffer header = ByteBuffer.allocate(SECTOR_SIZE * 2);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int sector = 2;
+        for (int index = 0; index < 1024; index++) {
+            int chunkX = (regionX << 5) + (index & 31);
+            int chunkZ = (regionZ << 5) + (index >> 5);
+            byte[] data = compress(chunkTag(chunkX, chunkZ));
+
+            int length = data.length + 5;
+            int sectors = (length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+            header.putInt(index << 2, sector << 8 | sectors);
+            header.putInt(SECTOR_SIZE + (index << 2), 1_700_000_000);
+
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeInt(data.length + 1);
+            out.writeByte(2); // zlib
+            out.write(data);
+            out.write(new byte[sectors * SECTOR_SIZE - length]);
+            sector += sectors;
+        }
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(header.array());
+            body.writeTo(out);
+        }
+        return file;
+    }
+
+    /**
+     * Get the uncompressed nbt of a generated chunk.
+     *
+     * @param chunkX chunk x coordinate
+     * @param chunkZ chunk z coordinate
+     * @return chunk nbt, including the root tag header
+     * @throws IOException never
+     */
+    public static byte @NotNull [] chunkTag(int chunkX, int chunkZ) throws IOException {
+        int[] heights = new int[256];
+        int[] biomes = new int[16];
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                heights[(z << 4) + x] = height((chunkX << 4) + x, (chunkZ << 4) + z);
+            }
+        }
+        for (int z = 0; z < 4; z++) {
+            for (int x = 0; x < 4; x++) {
+                int blockX = (chunkX << 4) + (x << 2);
+                int blockZ = (chunkZ << 4) + (z << 2);
+                biomes[(z << 2) + x] = biome(blockX, blockZ, height(blockX, blockZ));
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32768);
+        DataOutputStream out = new DataOutputStream(bytes);
+        tag(out, COMPOUND, "");
+        tag(out, INT, "DataVersion");
+        out.writeInt(DATA_VERSION);
+        tag(out, INT, "xPos");
+        out.writeInt(chunkX);
+        tag(out, INT, "yPos");
+        out.writeInt(MIN_Y >> 4);
+        tag(out, INT, "zPos");
+        out.writeInt(chunkZ);
+        tag(out, STRING, "Status");
+        out.writeUTF("minecraft:full");
+        tag(out, LONG, "InhabitedTime");
+        out.writeLong(hash(chunkX, chunkZ, 0) & 0xFFFFF);
+        tag(out, LONG, "LastUpdate");
+        out.writeLong(1_700_000_000L);
+
+        tag(out, COMPOUND, "Heightmaps");
+        int[] surface = new int[256];
+        for (int i = 0; i < 256; i++) {
+            // one above the highest block that is not air
+            int y = Math.max(heights[i], SEA_LEVEL) + treeHeight(chunkX, chunkZ, i) + 1;
+            while (block(chunkX, chunkZ, i, y, heights, biomes[((i >> 6) << 2) + ((i & 15) >> 2)]).equals("minecraft:air")) {
+                y--;
+            }
+            surface[i] = y + 1 - MIN_Y;
+        }
+        tag(out, LONG_ARRAY, "WORLD_SURFACE");
+        longArray(out, pack(surface, 9));
+        out.writeByte(0);
+
+        tag(out, LIST, "sections");
+        int sections = (MAX_Y - MIN_Y) >> 4;
+        out.writeByte(COMPOUND);
+        out.writeInt(sections);
+        for (int sectionY = MIN_Y >> 4; sectionY < MAX_Y >> 4; sectionY++) {
+            section(out, chunkX, chunkZ, sectionY, heights, biomes);
+        }
+
+        // parts of a real chunk the renderers never read, the chunk reader has to skip them
+        tag(out, LIST, "block_entities");
+        out.writeByte(COMPOUND);
+        out.writeInt(0);
+        tag(out, COMPOUND, "structures");
+        tag(out, COMPOUND, "References");
+        out.writeByte(0);
+        out.writeByte(0);
+
+        out.writeByte(0);
+        return bytes.toByteArray();
+    }
+
+    private static void section(@NotNull DataOutputStream out, int chunkX, int chunkZ, int sectionY, int @NotNull [] heights, int @NotNull [] biomes) throws IOException {
+        Map<String, Integer> palette = new LinkedHashMap<>();
+        int[] blocks = new int[4096];
+        for (int y = 0; y < 16; y++) {
+            int blockY = (sectionY << 4) + y;
+            for (int i = 0; i < 256; i++) {
+                String block = block(chunkX, chunkZ, i, blockY, heights, biomes[((i >> 6) << 2) + ((i & 15) >> 2)]);
+                blocks[(y << 8) + i] = palette.computeIfAbsent(block, k -> palette.size());
+            }
+        }
+
+        tag(out, BYTE, "Y");
+        out.writeByte(sectionY);
+
+        tag(out, COMPOUND, "block_states");
+        tag(out, LIST, "palette");
+        out.writeByte(COMPOUND);
+        out.writeInt(palette.size());
+        for (String block : palette.keySet()) {
+            tag(out, STRING, "Name");
+            out.writeUTF(block);
+            if (block.equals("minecraft:oak_leaves")) {
+                tag(out, COMPOUND, "Properties");
+                tag(out, STRING, "persistent");
+                out.writeUTF("false");
+                out.writeByte(0);
+            }
+            out.writeByte(0);
+        }
+        if (palette.size() > 1) {
+            tag(out, LONG_ARRAY, "data");
+            longArray(out, pack(blocks, Math.max(4, bits(palette.size()))));
+        }
+        out.writeByte(0);
+
+        // biomes are stored in 4x4x4 cells, the fixtures keep them the same top to bottom
+        List<Integer> biomePalette = new ArrayList<>();
+        int[] cells = new int[64];
+        for (int i = 0; i < 64; i++) {
+            int biome = biomes[i & 15];
+            int index = biomePalette.indexOf(biome);
+            if (index < 0) {
+                index = biomePalette.size();
+                biomePalette.add(biome);
+            }
+            cells[i] = index;
+        }
+        tag(out, COMPOUND, "biomes");
+        tag(out, LIST, "palette");
+        out.writeByte(STRING);
+        out.writeInt(biomePalette.size());
+        for (int biome : biomePalette) {
+            out.writeUTF(BIOMES[biome]);
+        }
+        if (biomePalette.size() > 1) {
+            tag(out, LONG_ARRAY, "data");
+            longArray(out, pack(cells, bits(biomePalette.size())));
+        }
+        out.writeByte(0);
+
+        out.writeByte(0);
+    }
+
+    private static @NotNull String block(int chunkX, int chunkZ, int i, int y, int @NotNull [] heights, int biome) {
+        int height = heights[i];
+        if (y < MIN_Y + 1) {
+            return "minecraft:bedrock";
+        }
+        if (y < height - 3) {
+            return y < 0 ? "minecraft:deepslate" : "minecraft:stone";
+        }
+        boolean sandy = biome == 2 || height <= SEA_LEVEL + 1;
+        if (y < height) {
+            return sandy ? "minecraft:sand" : "minecraft:dirt";
+        }
+        if (y == height) {
+            return sandy ? "minecraft:sand" : "minecraft:grass_block";
+        }
+        if (y <= SEA_LEVEL) {
+            return "minecraft:water";
+        }
+        int tree = treeHeight(chunkX, chunkZ, i);
+        if (tree > 0) {
+            if (y < height + tree - 1) {
+                return "minecraft:oak_log";
+            }
+            if (y <= height + tree) {
+                return "minecraft:oak_leaves";
+            }
+        } else if (y == height + 1 && !sandy) {
+            long roll = hash(chunkX, chunkZ, i + 1) & 0xFF;
+            if (roll < 8) {
+                return "minecraft:poppy";
+            }
+            if (roll < 40) {
+                return "minecraft:grass";
+            }
+        }
+        return "minecraft:air";
+    }
+
+    /**
+     * Trees are single columns of logs with leaves on top, kept away from the chunk edges.
+     */
+    private static int treeHeight(int chunkX, int chunkZ, int i) {
+        int x = i & 15;
+        int z = i >> 4;
+        if (x == 0 || x == 15 || z == 0 || z == 15) {
+            return 0;
+        }
+        if (height((chunkX << 4) + x, (chunkZ << 4) + z) <= SEA_LEVEL + 1) {
+            return 0;
+        }
+        return (hash(chunkX, chunkZ, i + 7) & 0x3F) == 0 ? 6 : 0;
+    }
+
+    private static int height(int x, int z) {
+        double h = 66.0D
+                + 14.0D * Math.sin(x / 47.0D) * Math.cos(z / 53.0D)
+                + 6.0D * Math.sin((x + z) / 19.0D)
+                + 3.0D * Math.cos((x - z) / 7.0D);
+        return (int) h;
+    }
+
+    private static int biome(int x, int z, int height) {
+        if (height < SEA_LEVEL - 2) {
+            return 4; // ocean
+        }
+        double zone = Math.sin(x / 97.0D) + Math.cos(z / 89.0D);
+        return zone < -0.8D ? 2 : zone < 0.0D ? 0 : zone < 0.8D ? 1 : 3;
+    }
+
+    private static long hash(int chunkX, int chunkZ, int salt) {
+        long h = SEED ^ (chunkX * 0x9E3779B97F4A7C15L) ^ (chunkZ * 0xC2B2AE3D27D4EB4FL) ^ (salt * 0x165667B19E3779F9L);
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private static int bits(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * Pack values into longs the way 1.16+ does, without values spanning two longs.
+     */
+    private static long @NotNull [] pack(int @NotNull [] values, int bits) {
+        int perLong = 64 / bits;
+        long[] data = new long[(values.length + perLong - 1) / perLong];
+        for (int i = 0; i < values.length; i++) {
+            data[i / perLong] |= (long) values[i] << ((i % perLong) * bits);
+        }
+        return data;
+    }
+
+    private static void tag(@NotNull DataOutputStream out, int type, @NotNull String name) throws IOException {
+        out.writeByte(type);
+        out.writeUTF(name);
+    }
+
+    private static void longArray(@NotNull DataOutputStream out, long @NotNull [] data) throws IOException {
+        out.writeInt(data.length);
+        for (long value : data) {
+            out.writeLong(value);
+        }
+    }
+
+    private static byte @NotNull [] compress(byte @NotNull [] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION))) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Get the pixels of a rendered looking tile, for the image writing benchmarks.
+     *
+     * @return 512x512 pixels in ARGB
+     */
+    public static int @NotNull [] tilePixels() {
+        int[] pixels = new int[512 * 512];
+        for (int z = 0; z < 512; z++) {
+            for (int x = 0; x < 512; x++) {
+                int height = height(x, z);
+                int base = height <= SEA_LEVEL ? 0x3F76E4 : biome(x, z, height) == 2 ? 0xDBD3A0 : 0x7FB238;
+                int shade = (height & 1) == 0 ? 0xF0 : 0xFF;
+                int red = (base >> 16 & 0xFF) * shade / 0xFF;
+                int green = (base >> 8 & 0xFF) * shade / 0xFF;
+                int blue = (base & 0xFF) * shade / 0xFF;
+                pixels[(z << 9) + x] = 0xFF000000 | red << 16 | green << 8 | blue;
+            }
+        }
+        return pixels;
+    }
+}
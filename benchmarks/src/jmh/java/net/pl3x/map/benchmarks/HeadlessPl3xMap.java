@@ -0,0 +1,235 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.key.Key;
+import net.kyori.adventure.platform.AudienceProvider;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.flattener.ComponentFlattener;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import net.pl3x.map.core.Pl3xMap;
+import net.pl3x.map.core.configuration.ColorsConfig;
+import net.pl3x.map.core.configuration.Config;
+import net.pl3x.map.core.image.io.IO;
+import net.pl3x.map.core.world.Biome;
+import net.pl3x.map.core.world.Block;
+import net.pl3x.map.core.world.Blocks;
+import net.pl3x.map.core.world.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Pl3xMap without a server, just enough of it to run the render pipeline.
+ * <p>
+ * Only the configs and registries the renderers need are loaded. No web server,
+ * region processor, scheduler or metrics are started.
+ */
+public class HeadlessPl3xMap extends Pl3xMap {
+    private static HeadlessPl3xMap instance;
+
+    private final Path mainDir;
+    private final AudienceProvider adventure = new ConsoleAudienceProvider();
+
+    private HeadlessPl3xMap(@NotNull Path mainDir) {
+        super(false);
+        this.mainDir = mainDir;
+    }
+
+    /**
+     * Get the shared instance, setting it up on first use.
+     *
+     * @return headless api
+     */
+    public static synchronized @NotNull HeadlessPl3xMap get() {
+        if (instance == null) {
+            try {
+                instance = new HeadlessPl3xMap(Files.createTempDirectory("pl3xmap-benchmarks"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            instance.load();
+        }
+        return instance;
+    }
+
+    private void load() {
+        Config.reload();
+        ColorsConfig.reload();
+
+        getBlockRegistry().init();
+        Blocks.registerDefaults();
+
+        IO.register();
+        getHeightmapRegistry().register();
+        getRendererRegistry().register();
+    }
+
+    @Override
+    public @NotNull String getPlatform() {
+        return "headless";
+    }
+
+    @Override
+    public @NotNull String getVersion() {
+        return "benchmarks";
+    }
+
+    @Override
+    public int getMaxPlayers() {
+        return 0;
+    }
+
+    @Override
+    public boolean getOnlineMode() {
+        return false;
+    }
+
+    @Override
+    public String getServerVersion() {
+        return "benchmarks";
+    }
+
+    @Override
+    public double getAverageTickTime() {
+        return -1.0D;
+    }
+
+    @Override
+    public @NotNull AudienceProvider adventure() {
+        return this.adventure;
+    }
+
+    @Override
+    public @NotNull Path getMainDir() {
+        return this.mainDir;
+    }
+
+    @Override
+    public @NotNull Path getJarPath() {
+        // called from the super constructor, so it can not use any fields
+        try {
+            return Path.of(Pl3xMap.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int getColorForPower(byte power) {
+        // redstone wire goes from dark to bright red
+        float f = power / 15.0F;
+        int red = (int) ((f * 0.6F + (f > 0.0F ? 0.4F : 0.3F)) * 255.0F);
+        int green = (int) (Math.max(0.0F, f * f * 0.7F - 0.5F) * 255.0F);
+        int blue = (int) (Math.max(0.0F, f * f * 0.6F - 0.7F) * 255.0F);
+        return red << 16 | green << 8 | blue;
+    }
+
+    @Override
+    public @Nullable Block getFlower(@NotNull World world, @NotNull Biome biome, int blockX, int blockY, int blockZ) {
+        // no flower features without a server, spread a few flowers over the biomes instead
+        return switch (biome.index() & 3) {
+            case 0 -> Blocks.DANDELION;
+            case 1 -> Blocks.POPPY;
+            case 2 -> Blocks.CORNFLOWER;
+            default -> null;
+        };
+    }
+
+    @Override
+    protected void loadBlocks() {
+    }
+
+    @Override
+    protected void loadWorlds() {
+    }
+
+    @Override
+    protected void loadPlayers() {
+    }
+
+    @Override
+    public @NotNull World cloneWorld(@NotNull World world) {
+        throw new UnsupportedOperationException("Headless worlds can not be cloned");
+    }
+
+    private static class ConsoleAudienceProvider implements AudienceProvider {
+        private final Audience console = new Audience() {
+            @Override
+            public void sendMessage(@NotNull Component message) {
+                System.out.println(PlainTextComponentSerializer.plainText().serialize(message));
+            }
+        };
+
+        @Override
+        public @NotNull Audience all() {
+            return this.console;
+        }
+
+        @Override
+        public @NotNull Audience console() {
+            return this.console;
+        }
+
+        @Override
+        public @NotNull Audience players() {
+            return Audience.empty();
+        }
+
+        @Override
+        public @NotNull Audience player(@NotNull UUID playerId) {
+            return Audience.empty();
+        }
+
+        @Override
+        public @NotNull Audience permission(@NotNull String permission) {
+            return Audience.empty();
+        }
+
+        @Override
+        public @NotNull Audience world(@NotNull Key world) {
+            return Audience.empty();
+        }
+
+        @Override
+        public @NotNull Audience server(@NotNull String serverName) {
+            return Audience.empty();
+        }
+
+        @Override
+        public @NotNull ComponentFlattener flattener() {
+            return ComponentFlattener.basic();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
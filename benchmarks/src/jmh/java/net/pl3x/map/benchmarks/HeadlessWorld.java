@@ -0,0 +1,125 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.benchmarks;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import net.pl3x.map.core.markers.Point;
+import net.pl3x.map.core.player.Player;
+import net.pl3x.map.core.util.Colors;
+import net.pl3x.map.core.util.Mathf;
+import net.pl3x.map.core.world.World;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Overworld shaped world reading the synthetic region files from {@link Fixtures}.
+ */
+public class HeadlessWorld extends World {
+    public HeadlessWorld(@NotNull String name, @NotNull Path regionDirectory) {
+        super(name, Fixtures.SEED, Point.ZERO, Type.OVERWORLD, regionDirectory);
+
+        // the biomes the fixtures are made of, with their vanilla colors
+        register(Fixtures.BIOMES[0], 0.8F, 0.4F, 0x3F76E4); // plains
+        register(Fixtures.BIOMES[1], 0.7F, 0.8F, 0x3F76E4); // forest
+        register(Fixtures.BIOMES[2], 2.0F, 0.0F, 0x3F76E4); // desert
+        register(Fixtures.BIOMES[3], 0.8F, 0.9F, 0x617B64); // swamp
+        register(Fixtures.BIOMES[4], 0.5F, 0.5F, 0x3F76E4); // ocean
+    }
+
+    private void register(@NotNull String id, float temperature, float humidity, int water) {
+        temperature = Mathf.clamp(0.0F, 1.0F, temperature);
+        humidity = Mathf.clamp(0.0F, 1.0F, humidity);
+        getBiomeRegistry().register(id, 0,
+                Colors.getDefaultFoliageColor(temperature, humidity),
+                Colors.getDefaultGrassColor(temperature, humidity),
+                water,
+                (x, z, color) -> color);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> @NotNull T getLevel() {
+        return (T) this;
+    }
+
+    @Override
+    public long hashSeed(long seed) {
+        return seed;
+    }
+
+    @Override
+    public boolean hasCeiling() {
+        return false;
+    }
+
+    @Override
+    public int getMinBuildHeight() {
+        return Fixtures.MIN_Y;
+    }
+
+    @Override
+    public int getMaxBuildHeight() {
+        return Fixtures.MAX_Y;
+    }
+
+    @Override
+    public int getLogicalHeight() {
+        return Fixtures.MAX_Y - Fixtures.MIN_Y;
+    }
+
+    @Override
+    public double getBorderMinX() {
+        return -29999984.0D;
+    }
+
+    @Override
+    public double getBorderMinZ() {
+        return -29999984.0D;
+    }
+
+    @Override
+    public double getBorderMaxX() {
+        return 29999984.0D;
+    }
+
+    @Override
+    public double getBorderMaxZ() {
+        return 29999984.0D;
+    }
+
+    @Override
+    public @NotNull Collection<@NotNull Player> getPlayers() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "HeadlessWorld{"
+                + "name=" + getName()
+                + ",seed=" + getSeed()
+                + ",spawn=" + getSpawn()
+                + "}";
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import net.pl3x.map.core.world.Region;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A world with one fully loaded synthetic region, shared by the benchmarks.
+ */
+@State(Scope.Benchmark)
+public class RegionState {
+    public HeadlessWorld world;
+    public Path regionFile;
+    public ByteBuffer buffer;
+    public Region region;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        HeadlessPl3xMap api = HeadlessPl3xMap.get();
+
+        Path regionDir = api.getMainDir().resolve("world").resolve("region");
+        this.regionFile = regionDir.resolve("r.0.0.mca");
+        if (!Files.exists(this.regionFile)) {
+            Fixtures.writeRegion(regionDir, 0, 0);
+        }
+
+        this.world = new HeadlessWorld("benchmark", regionDir);
+
+        try (FileChannel channel = FileChannel.open(this.regionFile, StandardOpenOption.READ)) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        // chunks are populated as they load
+        this.region = this.world.getRegion(null, 0, 0);
+        this.region.loadChunks();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import net.pl3x.map.core.configuration.Config;
+import net.pl3x.map.core.image.TileImage;
+import net.pl3x.map.core.image.io.IO;
+import net.pl3x.map.core.markers.Point;
+import net.pl3x.map.core.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and writing a full resolution tile in each image format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TileBenchmark {
+    @Param({"png", "png8", "webp", "jpg", "gif", "bmp"})
+    public String format;
+
+    private IO.Type io;
+    private int[] pixels;
+    private BufferedImage image;
+    private Path output;
+    private TileImage tile;
+
+    @Setup(Level.Trial)
+    public void setup(RegionState state) throws IOException {
+        this.io = IO.get(this.format);
+        this.pixels = Fixtures.tilePixels();
+        this.image = this.io.createBuffer();
+        for (int z = 0; z < 512; z++) {
+            for (int x = 0; x < 512; x++) {
+                this.image.setRGB(x, z, this.io.color(this.pixels[(z << 9) + x]));
+            }
+        }
+        this.output = Files.createTempFile("pl3xmap-tile", "." + this.format);
+        verify();
+
+        Config.WEB_TILE_FORMAT = this.format;
+        // only the full resolution tile, zoomed out tiles go through the tile cache
+        state.world.getConfig().ZOOM_MAX_OUT = 0;
+    }
+
+    /**
+     * Decode what the encoder wrote and compare it with what went in, so a broken encoder fails
+     * the run instead of being measured. Png and webp must decode exactly as written. Png8 must
+     * keep the colors of untouched pixels when a tile with more than 256 colors is read, patched
+     * and written back.
+     */
+    private void verify() {
+        switch (this.format) {
+            case "png", "webp" -> {
+                compare(this.image, roundTrip(this.image), 0);
+                BufferedImage gradient = gradient();
+                compare(gradient, roundTrip(gradient), 0);
+            }
+            case "png8" -> {
+                BufferedImage tile = roundTrip(gradient());
+                int[] expected = tile.getRGB(0, 0, 512, 512, null, 0, 512);
+                // patch the first chunk with colors the tile does not have yet
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        tile.setRGB(x, z, 0xFF000000 | (x * 16) << 16 | (z * 16) << 8 | 0x80);
+                    }
+                }
+                compare(expected, roundTrip(tile), 16);
+            }
+            default -> {
+                // lossy or encoded by image io, nothing to check
+            }
+        }
+    }
+
+    private @NotNull BufferedImage gradient() {
+        // far more than 256 colors, with a translucent corner
+        BufferedImage image = this.io.createBuffer();
+        for (int z = 0; z < 512; z++) {
+            for (int x = 0; x < 512; x++) {
+                int alpha = x < 64 && z < 64 ? 0x80 : 0xFF;
+                image.setRGB(x, z, alpha << 24 | (x >> 1) << 16 | (z >> 1) << 8 | ((x + z) >> 2));
+            }
+        }
+        return image;
+    }
+
+    private @NotNull BufferedImage roundTrip(@NotNull BufferedImage image) {
+        if (!this.io.write(this.output, image)) {
+            throw new IllegalStateException("Could not write " + this.format + " tile");
+        }
+        BufferedImage decoded = this.io.read(this.output);
+        if (decoded == null) {
+            throw new IllegalStateException("Could not decode " + this.format + " tile");
+        }
+        return decoded;
+    }
+
+    private void compare(@NotNull BufferedImage expected, @NotNull BufferedImage actual, int skip) {
+        compare(expected.getRGB(0, 0, 512, 512, null, 0, 512), actual, skip);
+    }
+
+    private void compare(int @NotNull [] expected, @NotNull BufferedImage actual, int skip) {
+        int[] pixels = actual.getRGB(0, 0, 512, 512, null, 0, 512);
+        for (int z = 0; z < 512; z++) {
+            for (int x = 0; x < 512; x++) {
+                if (x < skip && z < skip) {
+                    continue;
+                }
+                int want = expected[(z << 9) + x];
+                int got = pixels[(z << 9) + x];
+                // fully transparent pixels are all the same color
+                if (want != got && (want >>> 24 != 0 || got >>> 24 != 0)) {
+                    throw new IllegalStateException(String.format("%s tile decodes to #%08X instead of #%08X at %d,%d",
+                            this.format, got, want, x, z));
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupTile(RegionState state) throws IOException {
+        // an existing tile with matching hashes would skip the save entirely
+        Path tiles = state.world.getTilesDirectory();
+        if (Files.exists(tiles)) {
+            FileUtil.deleteDirectory(tiles);
+        }
+        this.tile = new TileImage("basic", state.world, Point.ZERO);
+        for (int z = 0; z < 512; z++) {
+            for (int x = 0; x < 512; x++) {
+                this.tile.setPixel(x, z, this.pixels[(z << 9) + x]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void write() {
+        this.io.write(this.output, this.image);
+    }
+
+    @Benchmark
+    public void saveToDisk() {
+        this.tile.saveToDisk();
+    }
+}
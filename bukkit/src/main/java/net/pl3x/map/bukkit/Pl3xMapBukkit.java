@@ -26,6 +26,8 @@ package net.pl3x.map.bukkit;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.chunk.LevelChunk;
 import net.pl3x.map.bukkit.command.BukkitCommandManager;
 import net.pl3x.map.core.Pl3xMap;
 import net.pl3x.map.core.event.server.ServerLoadedEvent;
@@ -33,6 +35,7 @@ import net.pl3x.map.core.network.Network;
 import net.pl3x.map.core.player.Player;
 import net.pl3x.map.core.player.PlayerListener;
 import net.pl3x.map.core.player.PlayerRegistry;
+import org.bukkit.Chunk;
 import org.bukkit.World;
 import org.bukkit.craftbukkit.v1_20_R1.CraftWorld;
 import org.bukkit.event.EventHandler;
@@ -41,7 +44,9 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.server.ServerLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldSaveEvent;
 import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
@@ -147,6 +152,37 @@ public class Pl3xMapBukkit extends JavaPlugin implements Listener {
         Pl3xMap.api().getWorldRegistry().unregister(event.getWorld().getName());
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        if (!event.isSaveChunk()) {
+            return;
+        }
+        net.pl3x.map.core.world.World world = Pl3xMap.api().getWorldRegistry().get(event.getWorld().getName());
+        if (world != null) {
+            world.markChunkDirty(event.getChunk().getX(), event.getChunk().getZ());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldSave(WorldSaveEvent event) {
+        if (this.isFolia) {
+            // loaded chunks can only be accessed from their own region threads
+            return;
+        }
+        net.pl3x.map.core.world.World world = Pl3xMap.api().getWorldRegistry().get(event.getWorld().getName());
+        if (world == null) {
+            return;
+        }
+        // the event fires before the chunks are written, only the ones with changes get saved
+        ServerLevel level = ((CraftWorld) event.getWorld()).getHandle();
+        for (Chunk chunk : event.getWorld().getLoadedChunks()) {
+            LevelChunk levelChunk = level.getChunkSource().getChunkNow(chunk.getX(), chunk.getZ());
+            if (levelChunk != null && levelChunk.isUnsaved()) {
+                world.markChunkDirty(chunk.getX(), chunk.getZ());
+            }
+        }
+    }
+
     @EventHandler(priority = EventPriority.LOWEST)
     public void onServerLoaded(ServerLoadEvent event) {
         Pl3xMap.api().getEventRegistry().callEvent(new ServerLoadedEvent());
@@ -117,6 +117,11 @@ public class Pl3xMapImpl extends Pl3xMap {
         return Bukkit.getVersion();
     }
 
+    @Override
+    public double getAverageTickTime() {
+        return MinecraftServer.getServer().getAverageTickTime();
+    }
+
     @Override
     public @NotNull AudienceProvider adventure() {
         if (this.adventure == null) {
@@ -49,6 +49,7 @@ import net.pl3x.map.core.event.server.Pl3xMapEnabledEvent;
 import net.pl3x.map.core.httpd.HttpdServer;
 import net.pl3x.map.core.image.io.IO;
 import net.pl3x.map.core.log.Logger;
+import net.pl3x.map.core.metrics.MetricRegistry;
 import net.pl3x.map.core.metrics.Metrics;
 import net.pl3x.map.core.player.PlayerRegistry;
 import net.pl3x.map.core.registry.BlockRegistry;
@@ -79,6 +80,7 @@ public abstract class Pl3xMap {
     private final Attributes manifestAttributes;
     private final HttpdServer httpdServer;
     private final RegionProcessor regionProcessor;
+    private final MetricRegistry metricRegistry;
     private final RegionDoubleChecker regionDoubleChecker;
     private final Scheduler scheduler;
 
@@ -91,6 +93,7 @@ public abstract class Pl3xMap {
     private final WorldRegistry worldRegistry;
 
     private ExecutorService renderExecutor;
+    private ExecutorService ioExecutor;
 
     private String commit;
     private Metrics metrics;
@@ -133,6 +136,7 @@ public abstract class Pl3xMap {
 
         // setup tasks
         this.regionProcessor = new RegionProcessor();
+        this.metricRegistry = new MetricRegistry();
         this.regionDoubleChecker = new RegionDoubleChecker();
         this.scheduler = new Scheduler();
 
@@ -158,6 +162,10 @@ public abstract class Pl3xMap {
         return this.regionProcessor;
     }
 
+    public @NotNull MetricRegistry getMetricRegistry() {
+        return this.metricRegistry;
+    }
+
     public @NotNull RegionDoubleChecker getRegionDoubleChecker() {
         return this.regionDoubleChecker;
     }
@@ -194,6 +202,10 @@ public abstract class Pl3xMap {
         return this.renderExecutor;
     }
 
+    public @NotNull ExecutorService getIOExecutor() {
+        return this.ioExecutor;
+    }
+
     public @NotNull Scheduler getScheduler() {
         return this.scheduler;
     }
@@ -222,6 +234,11 @@ public abstract class Pl3xMap {
         // create the executor service
         Logger.debug("Creating services");
         this.renderExecutor = ThreadFactory.createService("Pl3xMap-Renderer", Config.RENDER_THREADS);
+        this.ioExecutor = ThreadFactory.createService("Pl3xMap-IO", Config.RENDER_IO_THREADS);
+
+        // register render metrics
+        Logger.debug("Registering metrics");
+        getMetricRegistry().registerDefaults();
 
         // register built in tile image types
         Logger.debug("Registering tile image types");
@@ -287,6 +304,9 @@ public abstract class Pl3xMap {
         if (this.renderExecutor != null) {
             this.renderExecutor.shutdownNow();
         }
+        if (this.ioExecutor != null) {
+            this.ioExecutor.shutdownNow();
+        }
 
         // stop integrated server
         Logger.debug("Stopping internal server");
@@ -348,6 +368,13 @@ public abstract class Pl3xMap {
 
     public abstract String getServerVersion();
 
+    /**
+     * Get the average time the server took to process a tick recently.
+     *
+     * @return milliseconds per tick, or -1 if the platform can not tell
+     */
+    public abstract double getAverageTickTime();
+
     public abstract @NotNull AudienceProvider adventure();
 
     public abstract @NotNull Path getMainDir();
@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.command.commands;
+
+import cloud.commandframework.context.CommandContext;
+import cloud.commandframework.minecraft.extras.MinecraftExtrasMetaKeys;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import net.pl3x.map.core.Pl3xMap;
+import net.pl3x.map.core.command.CommandHandler;
+import net.pl3x.map.core.command.Pl3xMapCommand;
+import net.pl3x.map.core.command.Sender;
+import net.pl3x.map.core.configuration.Lang;
+import net.pl3x.map.core.metrics.Histogram;
+import net.pl3x.map.core.metrics.MetricRegistry;
+import net.pl3x.map.core.renderer.progress.Progress;
+import net.pl3x.map.core.renderer.task.RegionProcessor;
+import net.pl3x.map.core.world.World;
+import org.jetbrains.annotations.NotNull;
+
+public class MetricsCommand extends Pl3xMapCommand {
+    public MetricsCommand(@NotNull CommandHandler handler) {
+        super(handler);
+    }
+
+    @Override
+    public void register() {
+        getHandler().registerSubcommand(builder -> builder.literal("metrics")
+                .meta(MinecraftExtrasMetaKeys.DESCRIPTION, Lang.parse(Lang.COMMAND_METRICS_DESCRIPTION))
+                .permission("pl3xmap.command.metrics")
+                .handler(this::execute));
+    }
+
+    public void execute(@NotNull CommandContext<@NotNull Sender> context) {
+        Sender sender = context.getSender();
+
+        String lineNext = "├─";
+        String lineLast = "└─";
+
+        String header = "<color:#5b00ff><strikethrough>--------------</strikethrough> <white>Pl3xMap Metrics</white> <strikethrough>--------------</strikethrough></color>";
+        String footer = "<color:#5b00ff><strikethrough>----------------------------------------------</strikethrough></color>";
+
+        String timingsHeader = "<gray>Timings in ms (count avg p50 p95 p99):</gray>";
+        String timing = "<dark_gray><line></dark_gray> <white><name></white> <gray><count> <mean> <p50> <p95> <p99></gray>";
+        String noTimings = "<dark_gray>└─</dark_gray> <gray>nothing rendered yet</gray>";
+
+        String executors = """
+                <gray>Executors:</gray>
+                <dark_gray>├─</dark_gray> <white>render:</white> <gray><render_active>/<render_threads> busy, <render_queued> queued</gray>
+                <dark_gray>└─</dark_gray> <white>io:</white> <gray><io_active>/<io_threads> busy, <io_queued> queued</gray>""";
+        String stages = "<gray>Regions:</gray> <white><reading></white> <gray>reading,</gray> <white><scanning></white> <gray>scanning,</gray> <white><saving></white> <gray>saving</gray>";
+        String queuesHeader = "<gray>Queued regions:</gray>";
+        String queue = "<dark_gray><line></dark_gray> <white><world>:</white> <gray><size></gray>";
+
+        MetricRegistry metrics = Pl3xMap.api().getMetricRegistry();
+        RegionProcessor processor = Pl3xMap.api().getRegionProcessor();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(header).append("\n");
+
+        List<TagResolver.Single> placeholders = new ArrayList<>();
+
+        List<String> lines = new ArrayList<>();
+        for (MetricRegistry.Timer timer : MetricRegistry.Timer.values()) {
+            for (Map.Entry<String, Histogram> entry : metrics.getHistograms(timer).entrySet()) {
+                Histogram histogram = entry.getValue();
+                String name = timer.name().toLowerCase();
+                if (!entry.getKey().isEmpty()) {
+                    name += " " + entry.getKey();
+                }
+                // every line gets its own name placeholder, renderer keys come from addons
+                String suffix = "_" + lines.size();
+                placeholders.add(Placeholder.unparsed("name" + suffix, name));
+                lines.add(timing
+                        .replace("<name>", "<name" + suffix + ">")
+                        .replace("<count>", Long.toString(histogram.getCount()))
+                        .replace("<mean>", String.format("%.2f", histogram.getMean()))
+                        .replace("<p50>", formatQuantile(histogram.getQuantile(0.5D)))
+                        .replace("<p95>", formatQuantile(histogram.getQuantile(0.95D)))
+                        .replace("<p99>", formatQuantile(histogram.getQuantile(0.99D))));
+            }
+        }
+        sb.append(timingsHeader).append("\n");
+        if (lines.isEmpty()) {
+            sb.append(noTimings).append("\n");
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            sb.append(lines.get(i).replace("<line>", i < lines.size() - 1 ? lineNext : lineLast)).append("\n");
+        }
+
+        sb.append(executors
+                .replace("<render_active>", Integer.toString(MetricRegistry.getActiveThreads(Pl3xMap.api().getRenderExecutor())))
+                .replace("<render_threads>", Integer.toString(MetricRegistry.getThreads(Pl3xMap.api().getRenderExecutor())))
+                .replace("<render_queued>", Long.toString(MetricRegistry.getQueuedTasks(Pl3xMap.api().getRenderExecutor())))
+                .replace("<io_active>", Integer.toString(MetricRegistry.getActiveThreads(Pl3xMap.api().getIOExecutor())))
+                .replace("<io_threads>", Integer.toString(MetricRegistry.getThreads(Pl3xMap.api().getIOExecutor())))
+                .replace("<io_queued>", Long.toString(MetricRegistry.getQueuedTasks(Pl3xMap.api().getIOExecutor())))
+        ).append("\n");
+
+        sb.append(stages
+                .replace("<reading>", Integer.toString(processor.getRegionsInStage(Progress.Stage.READ)))
+                .replace("<scanning>", Integer.toString(processor.getRegionsInStage(Progress.Stage.SCAN)))
+                .replace("<saving>", Integer.toString(processor.getRegionsInStage(Progress.Stage.SAVE)))
+        ).append("\n");
+
+        Map<World, Integer> queues = processor.getQueueSizes();
+        if (!queues.isEmpty()) {
+            sb.append(queuesHeader).append("\n");
+            int i = 0;
+            for (Map.Entry<World, Integer> entry : queues.entrySet()) {
+                String suffix = "_" + i;
+                placeholders.add(Placeholder.unparsed("world" + suffix, entry.getKey().getName()));
+                sb.append(queue
+                        .replace("<line>", ++i < queues.size() ? lineNext : lineLast)
+                        .replace("<world>", "<world" + suffix + ">")
+                        .replace("<size>", Integer.toString(entry.getValue()))
+                ).append("\n");
+            }
+        }
+        sb.append(footer);
+
+        sender.sendMessage(sb.toString(), false, placeholders.toArray(TagResolver.Single[]::new));
+    }
+
+    private static @NotNull String formatQuantile(double millis) {
+        // bucket bounds below a millisecond are tiny fractions
+        return millis < 1.0D ? String.format("%.3f", millis) : String.format("%.0f", millis);
+    }
+}
@@ -84,6 +84,10 @@ public class RadiusRenderCommand extends Pl3xMapCommand {
             regions.forEach(region -> Logger.debug("Adding region: " + region));
         }
 
+        // render every chunk, not just the ones that changed, and write every tile again
+        world.getChunkModifiedState().invalidate(regions);
+        world.getTileHashStore().invalidate(regions);
+
         Pl3xMap.api().getRegionProcessor().addRegions(world, regions);
 
         sender.sendMessage(Lang.COMMAND_RADIUSRENDER_STARTING);
@@ -25,8 +25,11 @@ package net.pl3x.map.core.command.commands;
 
 import cloud.commandframework.context.CommandContext;
 import cloud.commandframework.minecraft.extras.MinecraftExtrasMetaKeys;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
 import net.pl3x.map.core.Pl3xMap;
 import net.pl3x.map.core.command.CommandHandler;
 import net.pl3x.map.core.command.Pl3xMapCommand;
@@ -34,6 +37,7 @@ import net.pl3x.map.core.command.Sender;
 import net.pl3x.map.core.configuration.Lang;
 import net.pl3x.map.core.renderer.progress.Progress;
 import net.pl3x.map.core.renderer.task.RegionProcessor;
+import net.pl3x.map.core.renderer.task.RenderThrottle;
 import net.pl3x.map.core.world.World;
 import org.jetbrains.annotations.NotNull;
 
@@ -59,35 +63,91 @@ public class StatusCommand extends Pl3xMapCommand {
         String header = "<color:#5b00ff><strikethrough>---------------</strikethrough> <white>Pl3xMap Status</white> <strikethrough>---------------</strikethrough></color>";
         String footer = "<color:#5b00ff><strikethrough>----------------------------------------------</strikethrough></color>";
 
+        String activeHeader = "<gray>Actively running renderers:</gray>";
         String active = """
-                <gray>Actively running renderers:</gray>
-                <dark_gray><linelast></dark_gray> <color:#5b00ff>World:</color> <white><world></white>
+                <dark_gray><line></dark_gray> <color:#5b00ff>World:</color> <white><world></white>
                    <dark_gray><linenext></dark_gray> <white>chk:</white> <gray><processed_chunks>/<total_chunks></gray>
                    <dark_gray><linenext></dark_gray> <white>pct:</white> <gray><percent>%</gray>
                    <dark_gray><linenext></dark_gray> <white>cps:</white> <gray><cps></gray>
-                   <dark_gray><linelast></dark_gray> <white>eta:</white> <gray><eta></gray>""";
+                   <dark_gray><linenext></dark_gray> <white>eta:</white> <gray><eta></gray>
+                   <dark_gray><linenext></dark_gray> <white>scn:</white> <gray><scanned_chunks> chunks, <scanned_blocks> blocks</gray>
+                   <dark_gray><linenext></dark_gray> <white>i/o:</white> <gray><bytes_read> read, <bytes_written> written</gray>
+                   <dark_gray><linelast></dark_gray> <white>avg:</white> <gray>read <read_time>ms, scan <scan_time>ms, save <save_time>ms</gray>""";
 
         String queuedHeader = "<gray>Queued up renderers:</gray>";
         String queuedEntry = "<dark_gray><line></dark_gray> <color:#5b00ff>World:</color> <white><world></white>";
 
+        String budget = "<gray>Render budget:</gray> <white><budget>/<max_budget></white> <gray>regions at</gray> <white><mspt></white> <gray>mspt</gray>";
+        String slowed = " <gray>(+<pause>ms per chunk)</gray>";
+
         String paused = "<gray>Renderers are </gray><white>paused</white>";
         String idle = "<gray>Renderers are </gray><white>idle</white>";
 
         RegionProcessor processor = Pl3xMap.api().getRegionProcessor();
-        Progress progress = processor.getProgress();
+        List<Progress> progresses = processor.getActiveProgress();
 
         StringBuilder sb = new StringBuilder();
         sb.append(header).append("\n");
 
-        boolean isPaused = processor.isPaused();
-        boolean isIdle = progress.getWorld() == null;
+        List<TagResolver.Single> placeholders = new ArrayList<>();
+        placeholders.add(Placeholder.unparsed("linenext", lineNext));
+        placeholders.add(Placeholder.unparsed("linelast", lineLast));
 
-        if (isPaused) {
+        if (processor.isPaused()) {
             sb.append(paused);
-        } else if (isIdle) {
+        } else if (progresses.isEmpty()) {
             sb.append(idle);
         } else {
-            sb.append(active);
+            RenderThrottle throttle = processor.getThrottle();
+            sb.append(budget);
+            if (throttle.getPause() > 0L) {
+                sb.append(slowed);
+            }
+            sb.append("\n");
+            placeholders.add(Placeholder.unparsed("budget", Integer.toString(processor.getInFlightLimit())));
+            placeholders.add(Placeholder.unparsed("max_budget", Integer.toString(processor.getMaxInFlight())));
+            placeholders.add(Placeholder.unparsed("mspt", throttle.getMSPT() < 0.0D ? "?" : String.format("%.2f", throttle.getMSPT())));
+            placeholders.add(Placeholder.unparsed("pause", Long.toString(throttle.getPause())));
+
+            sb.append(activeHeader);
+            for (int i = 0; i < progresses.size(); i++) {
+                Progress progress = progresses.get(i);
+                World world = progress.getWorld();
+                if (world == null) {
+                    // finished in the meantime
+                    continue;
+                }
+                // every world gets its own set of placeholders
+                String suffix = "_" + i;
+                sb.append("\n").append(active
+                        .replace("<line>", i < progresses.size() - 1 ? lineNext : lineLast)
+                        .replace("<world>", "<world" + suffix + ">")
+                        .replace("<processed_chunks>", "<processed_chunks" + suffix + ">")
+                        .replace("<total_chunks>", "<total_chunks" + suffix + ">")
+                        .replace("<percent>", "<percent" + suffix + ">")
+                        .replace("<cps>", "<cps" + suffix + ">")
+                        .replace("<eta>", "<eta" + suffix + ">")
+                        .replace("<scanned_chunks>", "<scanned_chunks" + suffix + ">")
+                        .replace("<scanned_blocks>", "<scanned_blocks" + suffix + ">")
+                        .replace("<bytes_read>", "<bytes_read" + suffix + ">")
+                        .replace("<bytes_written>", "<bytes_written" + suffix + ">")
+                        .replace("<read_time>", "<read_time" + suffix + ">")
+                        .replace("<scan_time>", "<scan_time" + suffix + ">")
+                        .replace("<save_time>", "<save_time" + suffix + ">"));
+                placeholders.add(Placeholder.unparsed("world" + suffix, world.getName()));
+                placeholders.add(Placeholder.unparsed("processed_chunks" + suffix, Long.toString(progress.getProcessedChunkCount())));
+                placeholders.add(Placeholder.unparsed("total_chunks" + suffix, Long.toString(progress.getTotalChunks())));
+                placeholders.add(Placeholder.unparsed("percent" + suffix, String.format("%.2f", progress.getPercent())));
+                placeholders.add(Placeholder.unparsed("cps" + suffix, String.format("%.2f", progress.getCPS())));
+                placeholders.add(Placeholder.unparsed("eta" + suffix, progress.getETA()));
+                placeholders.add(Placeholder.unparsed("scanned_chunks" + suffix, Long.toString(progress.getScannedChunks())));
+                placeholders.add(Placeholder.unparsed("scanned_blocks" + suffix, Long.toString(progress.getScannedBlocks())));
+                placeholders.add(Placeholder.unparsed("bytes_read" + suffix, formatBytes(progress.getBytesRead())));
+                placeholders.add(Placeholder.unparsed("bytes_written" + suffix, formatBytes(progress.getBytesWritten())));
+                placeholders.add(Placeholder.unparsed("read_time" + suffix, String.format("%.1f", progress.getAverageStageTime(Progress.Stage.READ))));
+                placeholders.add(Placeholder.unparsed("scan_time" + suffix, String.format("%.1f", progress.getAverageStageTime(Progress.Stage.SCAN))));
+                placeholders.add(Placeholder.unparsed("save_time" + suffix, String.format("%.1f", progress.getAverageStageTime(Progress.Stage.SAVE))));
+            }
         }
         sb.append("\n");
 
@@ -98,28 +158,20 @@ public class StatusCommand extends Pl3xMapCommand {
             for (World world : worlds) {
                 sb.append(queuedEntry
                         .replace("<world>", world.getName())
-                        .replace("<line>", i++ < worlds.size() ? lineNext : lineLast));
+                        .replace("<line>", ++i < worlds.size() ? lineNext : lineLast));
                 sb.append("\n");
             }
         }
         sb.append(footer);
 
-        if (isPaused || isIdle) {
-            sender.sendMessage(sb.toString(), false);
-            return;
-        }
+        sender.sendMessage(sb.toString(), false, placeholders.toArray(TagResolver.Single[]::new));
+    }
 
-        sender.sendMessage(sb.toString(), false,
-                Placeholder.unparsed("world", progress.getWorld().getName()),
-                Placeholder.unparsed("processed_chunks", Long.toString(progress.getProcessedChunks().get())),
-                Placeholder.unparsed("total_chunks", Long.toString(progress.getTotalChunks())),
-                Placeholder.unparsed("processed_regions", Long.toString(progress.getProcessedRegions().get())),
-                Placeholder.unparsed("total_regions", Long.toString(progress.getTotalRegions())),
-                Placeholder.unparsed("percent", String.format("%.2f", progress.getPercent())),
-                Placeholder.unparsed("cps", String.format("%.2f", progress.getCPS())),
-                Placeholder.unparsed("eta", progress.getETA()),
-                Placeholder.unparsed("linenext", lineNext),
-                Placeholder.unparsed("linelast", lineLast)
-        );
+    private static @NotNull String formatBytes(long bytes) {
+        if (bytes < 1024L) {
+            return bytes + " B";
+        }
+        int unit = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
+        return String.format("%.1f %siB", bytes / (double) (1L << (unit * 10)), "KMGTPE".charAt(unit - 1));
     }
 }
@@ -63,7 +63,9 @@ public final class Config extends AbstractConfig {
     @Key("settings.web-directory.tile-format")
     @Comment("""
             The image format for tile images.
-            Built in types: bmp, gif, jpeg, png""")
+            Built in types: bmp, gif, jpeg, png, png8, webp
+            png8 stores tiles with a 256 color palette and webp
+            stores them lossless, both are a lot smaller than png.""")
     public static String WEB_TILE_FORMAT = "png";
     @Key("settings.web-directory.tile-quality")
     @Comment("""
@@ -72,6 +74,18 @@ public final class Config extends AbstractConfig {
             1.0 is high quality, no compression, large file size
             Note: Not all image formats honor this setting.""")
     public static double WEB_TILE_QUALITY = 0.0D;
+    @Key("settings.web-directory.png-compression")
+    @Comment("""
+            The deflate level for png tiles (0 - 9)
+            0 is no compression, fastest, large file size
+            9 is best compression, slowest, small file size""")
+    public static int WEB_PNG_COMPRESSION = 6;
+    @Key("settings.web-directory.png-filter")
+    @Comment("""
+            The row filter for png tiles. Filters make rows easier to compress.
+            Available filters: none, sub, up, average, paeth, adaptive
+            Adaptive picks the best filter for each row.""")
+    public static String WEB_PNG_FILTER = "adaptive";
 
     @Key("settings.map.zoom.snap")
     @Comment("""
@@ -117,6 +131,12 @@ public final class Config extends AbstractConfig {
             It is generally advised against enabling this,
             for security reasons. But you do you, boo boo.""")
     public static boolean HTTPD_FOLLOW_SYMLINKS = false;
+    @Key("settings.internal-webserver.metrics")
+    @Comment("""
+            Serves render metrics in the Prometheus text format
+            at /metrics on the built-in web server.
+            Anyone who can view the map can read them.""")
+    public static boolean HTTPD_METRICS = false;
 
     @Key("settings.performance.render-threads")
     @Comment("""
@@ -124,6 +144,101 @@ public final class Config extends AbstractConfig {
             Value of -1 will use 50% of the available cpu-threads. (recommended)""")
     public static int RENDER_THREADS = -1;
 
+    @Key("settings.performance.io-threads")
+    @Comment("""
+            The number of threads to use for reading region files and
+            saving tiles, so the render-threads do not wait on the disk.
+            Raise this if your worlds are on slow or network storage.""")
+    public static int RENDER_IO_THREADS = 2;
+
+    @Key("settings.performance.regions-in-flight")
+    @Comment("""
+            The most regions to scan at the same time. Regions are only
+            handed to the render threads as others finish, so the queue
+            stays small no matter how big the world is.
+            Value of -1 will scan one region per render thread. (recommended)""")
+    public static int RENDER_REGIONS_IN_FLIGHT = -1;
+
+    @Key("settings.performance.throttle-mspt")
+    @Comment("""
+            Average server tick time in milliseconds above which rendering
+            backs off, so the map does not make the server lag. Fewer regions
+            are rendered at once until the server is back under it.
+            Value of 0 will disable throttling.""")
+    public static double RENDER_THROTTLE_MSPT = 45.0D;
+
+    @Key("settings.performance.single-pass-scan")
+    @Comment("""
+            Scans each region only once and hands every block column to all
+            enabled renderers at the same time, instead of scanning the whole
+            region again for each renderer.""")
+    public static boolean RENDER_SINGLE_PASS_SCAN = true;
+
+    @Key("settings.performance.split-region-scans")
+    @Comment("""
+            Lets idle render threads help scanning a region one row of
+            chunks at a time. Makes small renders and live updates of
+            a few regions use all render threads. Only works together
+            with single-pass-scan.""")
+    public static boolean RENDER_SPLIT_REGION_SCANS = true;
+
+    @Key("settings.performance.renderer-timings")
+    @Comment("""
+            Times each renderer separately for /map metrics, also when
+            single-pass-scan hands them the same block columns.
+            This costs a little render speed, only enable it while
+            looking into slow renders.""")
+    public static boolean RENDER_RENDERER_TIMINGS = false;
+
+    @Key("settings.performance.parallel-chunk-loading")
+    @Comment("""
+            Decodes the chunks of a region file on all render threads
+            instead of only the one scanning that region. Helps when
+            only a few regions are being rendered at once.""")
+    public static boolean RENDER_PARALLEL_CHUNK_LOADING = false;
+
+    @Key("settings.performance.incremental-chunk-rendering")
+    @Comment("""
+            Only re-renders the chunks of a region whose timestamps in the
+            region file changed since the last render, and patches them
+            into the existing tiles. Full and radius renders always
+            render every chunk.""")
+    public static boolean RENDER_INCREMENTAL_CHUNKS = true;
+
+    @Key("settings.performance.tile-cache-size")
+    @Comment("""
+            How many zoomed out tiles to keep in memory while rendering,
+            so each is only saved once all of its regions are rendered.
+            Each tile takes about 1 MB. Set to 0 to disable.""")
+    public static int RENDER_TILE_CACHE_SIZE = 64;
+
+    @Key("settings.performance.live-update-delay")
+    @Comment("""
+            Seconds to wait after the server saved or unloaded a chunk
+            before rendering it, so the chunk has been written to the
+            region file by the time we read it.""")
+    public static int RENDER_LIVE_UPDATE_DELAY = 5;
+
+    @Key("settings.performance.region-sweep-interval")
+    @Comment("""
+            Seconds between full checks of the region files for changes
+            the server did not report to us. Chunk saves and unloads
+            are picked up right away, so this can be rare.""")
+    public static int RENDER_REGION_SWEEP_INTERVAL = 600;
+
+    @Key("settings.performance.player-priority-radius")
+    @Comment("""
+            Regions within this many regions of an online player
+            are rendered before anything else in the queue.""")
+    public static int RENDER_PRIORITY_PLAYER_RADIUS = 2;
+
+    @Key("settings.performance.viewer-priority-time")
+    @Comment("""
+            Seconds that regions someone looked at on the web map are
+            rendered ahead of a background render. Only works with
+            the built-in web server.""")
+    public static int RENDER_PRIORITY_VIEWER_TIME = 60;
+
     @Key("settings.performance.gc.when-finished")
     @Comment("""
             Runs the JVM GC after a render job stops to free up memory immediately.""")
@@ -92,6 +92,9 @@ public final class Lang extends AbstractConfig {
     @Key("command.hide.success")
     public static String COMMAND_HIDE_SUCCESS = "<grey><player> <green>is now hidden from the map";
 
+    @Key("command.metrics.description")
+    public static String COMMAND_METRICS_DESCRIPTION = "View render timings and queue metrics";
+
     @Key("command.pause.description")
     public static String COMMAND_PAUSE_DESCRIPTION = "Toggle the pause state of renderers";
     @Key("command.pause.paused")
@@ -95,6 +95,13 @@ public final class WorldConfig extends AbstractConfig {
             EVEN_ODD_OLD_SCHOOL mix of EVEN_ODD and OLD_SCHOOL.""")
     public String RENDER_HEIGHTMAP_TYPE = "MODERN";
 
+    @Key("render.weight")
+    @Comment("""
+            Share of the render threads this world gets while other
+            worlds are rendering at the same time. A world with a weight
+            of 2 renders twice as many regions as a world with 1.""")
+    public int RENDER_WEIGHT = 1;
+
     @Key("ui.display-name")
     @Comment("""
             The display name of the world in the world list.
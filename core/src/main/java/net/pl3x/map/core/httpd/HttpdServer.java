@@ -35,11 +35,14 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import net.pl3x.map.core.Pl3xMap;
 import net.pl3x.map.core.configuration.Config;
 import net.pl3x.map.core.configuration.Lang;
+import net.pl3x.map.core.image.io.IO;
 import net.pl3x.map.core.log.LogFilter;
 import net.pl3x.map.core.log.Logger;
 import net.pl3x.map.core.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
 
 public class HttpdServer {
     private Undertow server;
@@ -67,7 +70,7 @@ public class HttpdServer {
                     .build();
             ResourceHandler resourceHandler = new ResourceHandler(resourceManager, exchange -> {
                 String url = exchange.getRelativePath();
-                if (url.startsWith("/tiles") && (url.endsWith(".png") || url.endsWith(".gz"))) {
+                if (url.startsWith("/tiles") && (url.endsWith("." + IO.get(Config.WEB_TILE_FORMAT).getKey()) || url.endsWith(".gz"))) {
                     exchange.setStatusCode(200);
                     return;
                 }
@@ -82,8 +85,18 @@ public class HttpdServer {
                     .setServerOption(UndertowOptions.ENABLE_HTTP2, true)
                     .addHttpListener(Config.HTTPD_PORT, Config.HTTPD_BIND)
                     .setHandler(exchange -> {
+                        if (Config.HTTPD_METRICS && exchange.getRelativePath().equals("/metrics")) {
+                            exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "no-cache");
+                            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain; version=0.0.4; charset=utf-8");
+                            exchange.getResponseSender().send(Pl3xMap.api().getMetricRegistry().toPrometheus());
+                            return;
+                        }
                         if (exchange.getRelativePath().startsWith("/tiles")) {
                             exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "max-age=0, must-revalidate, no-cache");
+                            markTileViewed(exchange.getRelativePath());
+                        }
+                        if (exchange.getRelativePath().endsWith(".webp")) {
+                            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "image/webp");
                         }
                         if (exchange.getRelativePath().endsWith(".gz")) {
                             exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
@@ -106,6 +119,27 @@ public class HttpdServer {
         }
     }
 
+    // tiles/<world>/<zoom>/<renderer>/<x>_<z>.<ext>
+    private void markTileViewed(@NotNull String url) {
+        String[] split = url.split("/");
+        if (split.length != 6) {
+            return;
+        }
+        try {
+            int zoom = Integer.parseInt(split[3]);
+            String file = split[5];
+            int underscore = file.indexOf('_');
+            int dot = file.indexOf('.', underscore);
+            if (underscore < 0 || dot < 0) {
+                return;
+            }
+            int x = Integer.parseInt(file.substring(0, underscore));
+            int z = Integer.parseInt(file.substring(underscore + 1, dot));
+            Pl3xMap.api().getRegionProcessor().markTileViewed(split[2], zoom, x, z);
+        } catch (NumberFormatException ignore) {
+        }
+    }
+
     public void stopServer() {
         if (!Config.HTTPD_ENABLED) {
             return;
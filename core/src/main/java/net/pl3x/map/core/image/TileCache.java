@@ -0,0 +1,281 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Consumer;
+import net.pl3x.map.core.Pl3xMap;
+import net.pl3x.map.core.configuration.Config;
+import net.pl3x.map.core.image.io.IO;
+import net.pl3x.map.core.markers.Point;
+import net.pl3x.map.core.world.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps zoomed out tiles in memory while their regions are being rendered.
+ * <p>
+ * A zoomed out tile covers many regions. Instead of decoding and encoding it again for each
+ * of them, it stays in memory until every region of the current batch that it covers has been
+ * written to it, and is only then saved to disk. When the cache is full the least recently used
+ * tile is saved early and read back from disk the next time it is needed.
+ */
+public class TileCache {
+    private final World world;
+
+    // tiles in least recently used order, guarded by itself
+    private final LinkedHashMap<@NotNull Path, @NotNull Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    // regions of the current batch already written to (or skipped by) each tile,
+    // kept for the whole batch so regions added later are counted against them
+    private final Map<@NotNull Path, @NotNull Integer> written = new ConcurrentHashMap<>();
+
+    private Map<@NotNull Parent, @NotNull Integer> pending = new ConcurrentHashMap<>();
+
+    public TileCache(@NotNull World world) {
+        this.world = world;
+    }
+
+    /**
+     * Start a new batch of regions.
+     *
+     * @param regions regions that are about to be rendered
+     */
+    public void begin(@NotNull Collection<@NotNull Point> regions) {
+        Map<Parent, Integer> pending = new ConcurrentHashMap<>();
+        for (Point region : regions) {
+            for (int zoom = 1; zoom <= this.world.getConfig().ZOOM_MAX_OUT; zoom++) {
+                pending.merge(new Parent(zoom, region.x() >> zoom, region.z() >> zoom), 1, Integer::sum);
+            }
+        }
+        this.pending = pending;
+        this.written.clear();
+    }
+
+    /**
+     * Add regions queued up while the current batch is being rendered.
+     *
+     * @param regions regions that were added to the batch
+     */
+    public void add(@NotNull Collection<@NotNull Point> regions) {
+        for (Point region : regions) {
+            for (int zoom = 1; zoom <= this.world.getConfig().ZOOM_MAX_OUT; zoom++) {
+                this.pending.merge(new Parent(zoom, region.x() >> zoom, region.z() >> zoom), 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Write a region to a zoomed out tile.
+     *
+     * @param path   path of the tile
+     * @param io     image format of the tile
+     * @param zoom   zoom level of the tile
+     * @param region region being written
+     * @param writer writes the region into the tile
+     * @param saved  called once the tile is saved to disk with the region in it
+     */
+    public void write(@NotNull Path path, IO.@NotNull Type io, int zoom, @NotNull Point region, @NotNull Consumer<@NotNull BufferedImage> writer, @NotNull Runnable saved) {
+        if (Config.RENDER_TILE_CACHE_SIZE <= 0) {
+            writeToDisk(path, io, writer, saved);
+            return;
+        }
+
+        ReadWriteLock lock = TileImage.getLock(path);
+        lock.writeLock().lock();
+        try {
+            Entry entry;
+            synchronized (this.entries) {
+                entry = this.entries.get(path);
+            }
+            if (entry == null) {
+                entry = new Entry(io, readBuffer(path, io), new ArrayList<>());
+                synchronized (this.entries) {
+                    this.entries.put(path, entry);
+                }
+            }
+
+            writer.accept(entry.buffer);
+            entry.saved.add(saved);
+
+            countDown(path, zoom, region, entry);
+        } catch (Throwable t) {
+            t.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        evict();
+    }
+
+    /**
+     * Tell a zoomed out tile that a region of the current batch will not be written to it,
+     * so the tile does not keep waiting for it.
+     *
+     * @param path   path of the tile
+     * @param zoom   zoom level of the tile
+     * @param region region that was skipped
+     */
+    public void skip(@NotNull Path path, int zoom, @NotNull Point region) {
+        if (Config.RENDER_TILE_CACHE_SIZE <= 0) {
+            return; // tiles are written straight to disk, nothing waits
+        }
+
+        ReadWriteLock lock = TileImage.getLock(path);
+        lock.writeLock().lock();
+        try {
+            Entry entry;
+            synchronized (this.entries) {
+                entry = this.entries.get(path);
+            }
+            countDown(path, zoom, region, entry);
+        } catch (Throwable t) {
+            t.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void countDown(@NotNull Path path, int zoom, @NotNull Point region, @Nullable Entry entry) {
+        int written = this.written.merge(path, 1, Integer::sum);
+        int left = this.pending.getOrDefault(new Parent(zoom, region.x() >> zoom, region.z() >> zoom), 1) - written;
+        if (left <= 0) {
+            // every region of this batch is in, save it
+            if (entry != null) {
+                synchronized (this.entries) {
+                    this.entries.remove(path);
+                }
+                writeTile(path, entry);
+            }
+        }
+    }
+
+    /**
+     * Save every tile still held in memory to disk.
+     */
+    public void flush() {
+        List<Path> paths;
+        synchronized (this.entries) {
+            paths = new ArrayList<>(this.entries.keySet());
+        }
+        paths.forEach(this::save);
+        this.written.clear();
+    }
+
+    private void evict() {
+        while (true) {
+            Path eldest;
+            synchronized (this.entries) {
+                if (this.entries.size() <= Config.RENDER_TILE_CACHE_SIZE) {
+                    return;
+                }
+                Iterator<Path> iter = this.entries.keySet().iterator();
+                eldest = iter.next();
+            }
+            save(eldest);
+        }
+    }
+
+    private void save(@NotNull Path path) {
+        // lock before removing so nobody reads the stale file in between
+        ReadWriteLock lock = TileImage.getLock(path);
+        lock.writeLock().lock();
+        try {
+            Entry entry;
+            synchronized (this.entries) {
+                entry = this.entries.remove(path);
+            }
+            if (entry != null) {
+                writeTile(path, entry);
+            }
+        } catch (Throwable t) {
+            t.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeTile(@NotNull Path path, @NotNull Entry entry) {
+        if (writeTile(path, entry.io, entry.buffer)) {
+            entry.saved.forEach(Runnable::run);
+        }
+    }
+
+    private boolean writeTile(@NotNull Path path, IO.@NotNull Type io, @NotNull BufferedImage buffer) {
+        if (!io.write(path, buffer)) {
+            return false;
+        }
+        Pl3xMap.api().getRegionProcessor().getProgress(this.world).addBytesWritten(path);
+        return true;
+    }
+
+    private void writeToDisk(@NotNull Path path, IO.@NotNull Type io, @NotNull Consumer<@NotNull BufferedImage> writer, @NotNull Runnable saved) {
+        ReadWriteLock lock = TileImage.getLock(path);
+        lock.writeLock().lock();
+        try {
+            BufferedImage buffer = readBuffer(path, io);
+            writer.accept(buffer);
+            if (writeTile(path, io, buffer)) {
+                saved.run();
+            }
+        } catch (Throwable t) {
+            t.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static @NotNull BufferedImage readBuffer(@NotNull Path path, IO.@NotNull Type io) throws IOException {
+        BufferedImage buffer = null;
+
+        // try to read existing image
+        if (Files.exists(path) && Files.size(path) > 0) {
+            buffer = io.read(path);
+        }
+
+        // if not, create a new image
+        if (buffer == null) {
+            buffer = io.createBuffer();
+        }
+
+        return buffer;
+    }
+
+    private record Parent(int zoom, int x, int z) {
+    }
+
+    // saved is only touched while holding the tile's write lock
+    private record Entry(IO.@NotNull Type io, @NotNull BufferedImage buffer, @NotNull List<@NotNull Runnable> saved) {
+    }
+}
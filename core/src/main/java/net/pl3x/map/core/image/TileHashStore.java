@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.image;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import net.pl3x.map.core.markers.Point;
+import net.pl3x.map.core.util.FileUtil;
+import net.pl3x.map.core.world.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps a content hash of every chunk in each saved tile, so tiles whose pixels
+ * did not change are not encoded and written again.
+ * <p>
+ * The hashes of a region are only stored once its zoom 0 tile and every zoomed out tile
+ * built from it are on disk. They are stored along with the zoom levels they cover, so
+ * changing the zoom levels renders the tiles again.
+ */
+public class TileHashStore {
+    private static final int CHUNKS = 32 << 5;
+
+    private final World world;
+    private final Path dir;
+
+    public TileHashStore(@NotNull World world) {
+        this.world = world;
+        this.dir = world.getTilesDirectory().resolve(".hash");
+    }
+
+    /**
+     * Hash the pixels of every chunk in a region.
+     *
+     * @param pixels region pixels, 512x512 row by row
+     * @return hash of each chunk, indexed like the chunks of a region
+     */
+    public static long @NotNull [] hash(int @NotNull [] pixels) {
+        long[] hashes = new long[CHUNKS];
+        for (int index = 0; index < CHUNKS; index++) {
+            int startX = (index & 0x1F) << 4;
+            int startZ = (index >> 5) << 4;
+            long hash = 0xCBF29CE484222325L;
+            for (int z = startZ; z < startZ + 16; z++) {
+                for (int x = startX, i = (z << 9) + startX; x < startX + 16; x++, i++) {
+                    hash = (hash ^ pixels[i]) * 0x100000001B3L;
+                }
+            }
+            // spread the bits so similar chunks do not end up with similar hashes
+            hash ^= hash >>> 33;
+            hash *= 0xFF51AFD7ED558CCDL;
+            hash ^= hash >>> 33;
+            hashes[index] = hash;
+        }
+        return hashes;
+    }
+
+    public long @Nullable [] get(@NotNull String renderer, @NotNull Point region) {
+        Path file = getFile(renderer, region);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != this.world.getConfig().ZOOM_MAX_OUT) {
+                return null; // zoomed out tiles of other zoom levels, render it again
+            }
+            long[] hashes = new long[CHUNKS];
+            for (int i = 0; i < CHUNKS; i++) {
+                hashes[i] = in.readLong();
+            }
+            return hashes;
+        } catch (IOException ignore) {
+            return null;
+        }
+    }
+
+    public void set(@NotNull String renderer, @NotNull Point region, long @NotNull [] hashes) {
+        Path file = getFile(renderer, region);
+        FileUtil.createDirs(file.getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(this.world.getConfig().ZOOM_MAX_OUT);
+            for (long hash : hashes) {
+                out.writeLong(hash);
+            }
+            out.flush();
+        } catch (IOException ignore) {
+        }
+    }
+
+    /**
+     * Forget the hashes of a region, so its tiles are written on the next render.
+     *
+     * @param renderer renderer key
+     * @param region   region position
+     */
+    public void invalidate(@NotNull String renderer, @NotNull Point region) {
+        try {
+            Files.deleteIfExists(getFile(renderer, region));
+        } catch (IOException ignore) {
+        }
+    }
+
+    /**
+     * Forget the hashes of regions for every renderer, so their tiles are written on the next render.
+     *
+     * @param regions region positions
+     */
+    public void invalidate(@NotNull Collection<@NotNull Point> regions) {
+        if (!Files.isDirectory(this.dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> renderers = Files.newDirectoryStream(this.dir, Files::isDirectory)) {
+            for (Path renderer : renderers) {
+                for (Point region : regions) {
+                    Files.deleteIfExists(renderer.resolve(region.x() + "_" + region.z()));
+                }
+            }
+        } catch (IOException ignore) {
+        }
+    }
+
+    private @NotNull Path getFile(@NotNull String renderer, @NotNull Point region) {
+        return this.dir.resolve(renderer).resolve(region.x() + "_" + region.z());
+    }
+}
@@ -24,15 +24,17 @@
 package net.pl3x.map.core.image;
 
 import java.awt.image.BufferedImage;
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.BitSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import net.pl3x.map.core.Keyed;
+import net.pl3x.map.core.Pl3xMap;
 import net.pl3x.map.core.configuration.Config;
 import net.pl3x.map.core.image.io.IO;
 import net.pl3x.map.core.markers.Point;
@@ -55,12 +57,20 @@ public class TileImage extends Keyed {
 
     private final IO.Type io;
 
+    // chunks that were re-rendered, null means the whole region
+    private BitSet modifiedChunks;
+
     private boolean written = false;
 
     public TileImage(@NotNull String key, @NotNull World world, @NotNull Point region) {
+        this(key, world, region, null);
+    }
+
+    public TileImage(@NotNull String key, @NotNull World world, @NotNull Point region, @Nullable BitSet modifiedChunks) {
         super(key);
         this.world = world;
         this.region = region;
+        this.modifiedChunks = modifiedChunks;
 
         this.io = IO.get(Config.WEB_TILE_FORMAT);
     }
@@ -78,65 +88,173 @@ public class TileImage extends Keyed {
         this.written = true;
     }
 
-    public void saveToDisk() {
+    /**
+     * Save the tile and its zoomed out tiles to disk.
+     *
+     * @return false if the tile could not be saved
+     */
+    public boolean saveToDisk() {
         if (!this.written) {
-            return; // nothing written, nothing to save
+            skip(getKey(), this.world, this.region);
+            return true; // nothing written, nothing to save
+        }
+
+        // compare the rendered chunks with what is already on disk
+        TileHashStore hashStore = this.world.getTileHashStore();
+        long[] hashes = TileHashStore.hash(this.pixels);
+        long[] stored = tilesExist() ? hashStore.get(getKey(), this.region) : null;
+        if (stored != null) {
+            BitSet changed = new BitSet(hashes.length);
+            for (int i = 0; i < hashes.length; i++) {
+                if ((this.modifiedChunks == null || this.modifiedChunks.get(i)) && hashes[i] != stored[i]) {
+                    changed.set(i);
+                } else {
+                    hashes[i] = stored[i];
+                }
+            }
+            if (changed.isEmpty()) {
+                skip(getKey(), this.world, this.region);
+                return true; // pixel identical to what is on disk, nothing to save
+            }
+            // only patch the chunks that look different
+            this.modifiedChunks = changed;
         }
-        for (int zoom = 0; zoom <= this.world.getConfig().ZOOM_MAX_OUT; zoom++) {
-            Path dirPath = this.world.getTilesDirectory().resolve(String.format(DIR_PATH, zoom, getKey()));
+
+        // the tiles on disk are about to change, forget the old hashes until every tile is saved
+        hashStore.invalidate(getKey(), this.region);
+
+        int[] source = saveBaseTile();
+        if (source == null) {
+            // the zoomed out tiles would be built from unpatched pixels and the hashes would
+            // claim this tile is on disk, leave both for the next render to try again
+            skip(getKey(), this.world, this.region);
+            return false;
+        }
+
+        int maxZoom = this.world.getConfig().ZOOM_MAX_OUT;
+        if (maxZoom < 1) {
+            hashStore.set(getKey(), this.region, hashes);
+            return true;
+        }
+
+        // only store the hashes once the cache saved every zoomed out tile with this region in it
+        AtomicInteger unsaved = new AtomicInteger(maxZoom);
+        Runnable saved = () -> {
+            if (unsaved.decrementAndGet() == 0) {
+                hashStore.set(getKey(), this.region, hashes);
+            }
+        };
+
+        for (int zoom = 1; zoom <= maxZoom; zoom++) {
+            Path filePath = getPath(zoom);
 
             // create directories if they don't exist
-            FileUtil.createDirs(dirPath);
+            FileUtil.createDirs(filePath.getParent());
 
-            Path filePath = dirPath.resolve(String.format(FILE_PATH,
-                    this.region.x() >> zoom,
-                    this.region.z() >> zoom,
-                    this.io.getKey()));
+            // zoomed out tiles are shared with other regions, let the cache write them
+            int size = 512 >> zoom;
+            int level = zoom;
+            this.world.getTileCache().write(filePath, this.io, zoom, this.region,
+                    buffer -> writePixels(buffer, source, size, level), saved);
+        }
+        return true;
+    }
 
-            ReadWriteLock lock = FILE_LOCKS.computeIfAbsent(filePath, k -> new ReentrantReadWriteLock(true));
-            lock.writeLock().lock();
+    private boolean tilesExist() {
+        for (int zoom = 0; zoom <= this.world.getConfig().ZOOM_MAX_OUT; zoom++) {
+            if (!Files.exists(getPath(zoom))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Save the pixels to the zoom 0 tile.
+     *
+     * @return pixels to build the zoomed out tiles from, or null if the tile could not be saved
+     */
+    private int @Nullable [] saveBaseTile() {
+        Path filePath = getPath(0);
 
-            // wrap all this to ensure we close the file lock even on fail
-            try {
-                // read existing image from disk
-                BufferedImage buffer = getBuffer(filePath);
+        // create directories if they don't exist
+        FileUtil.createDirs(filePath.getParent());
 
-                // write new pixels
-                writePixels(buffer, 512 >> zoom, zoom);
+        ReadWriteLock lock = getLock(filePath);
+        lock.writeLock().lock();
 
-                // finally, save buffer to disk
-                this.io.write(filePath, buffer);
-            } catch (Throwable t) {
-                t.printStackTrace();
+        // wrap all this to ensure we close the file lock even on fail
+        try {
+            // read existing image from disk
+            BufferedImage buffer = TileCache.readBuffer(filePath, this.io);
+
+            // write new pixels
+            writePixels(buffer, this.pixels, 512, 0);
+
+            // finally, save buffer to disk
+            if (!this.io.write(filePath, buffer)) {
+                return null;
             }
+            Pl3xMap.api().getRegionProcessor().getProgress(this.world).addBytesWritten(filePath);
 
+            if (this.modifiedChunks != null) {
+                // only some chunks were rendered, build the zoomed out
+                // tiles from the patched tile instead of empty pixels
+                return buffer.getRGB(0, 0, 512, 512, null, 0, 512);
+            }
+            return this.pixels;
+        } catch (Throwable t) {
+            t.printStackTrace();
+            return null;
+        } finally {
             lock.writeLock().unlock();
         }
     }
 
-    private @NotNull BufferedImage getBuffer(@NotNull Path path) throws IOException {
-        BufferedImage buffer = null;
-
-        // try to read existing image
-        if (Files.exists(path) && Files.size(path) > 0) {
-            buffer = this.io.read(path);
+    /**
+     * Tell the zoomed out tiles of a region that it will not be saved this batch, so they do not wait for it.
+     *
+     * @param key    renderer key
+     * @param world  world of the region
+     * @param region region that was skipped
+     */
+    public static void skip(@NotNull String key, @NotNull World world, @NotNull Point region) {
+        IO.Type io = IO.get(Config.WEB_TILE_FORMAT);
+        for (int zoom = 1; zoom <= world.getConfig().ZOOM_MAX_OUT; zoom++) {
+            world.getTileCache().skip(getPath(world, key, io, region, zoom), zoom, region);
         }
+    }
 
-        // if not, create a new image
-        if (buffer == null) {
-            buffer = this.io.createBuffer();
-        }
+    private @NotNull Path getPath(int zoom) {
+        return getPath(this.world, getKey(), this.io, this.region, zoom);
+    }
+
+    private static @NotNull Path getPath(@NotNull World world, @NotNull String key, IO.@NotNull Type io, @NotNull Point region, int zoom) {
+        return world.getTilesDirectory()
+                .resolve(String.format(DIR_PATH, zoom, key))
+                .resolve(String.format(FILE_PATH,
+                        region.x() >> zoom,
+                        region.z() >> zoom,
+                        io.getKey()));
+    }
 
-        return buffer;
+    static @NotNull ReadWriteLock getLock(@NotNull Path path) {
+        return FILE_LOCKS.computeIfAbsent(path, k -> new ReentrantReadWriteLock(true));
     }
 
-    private void writePixels(@NotNull BufferedImage buffer, int size, int zoom) {
+    private void writePixels(@NotNull BufferedImage buffer, int @NotNull [] source, int size, int zoom) {
         int step = 1 << zoom;
         int baseX = (this.region.x() * size) & 0x1FF;
         int baseZ = (this.region.z() * size) & 0x1FF;
-        for (int x = 0; x < 512; x += step) {
-            for (int z = 0; z < 512; z += step) {
-                int argb = getPixel(x, z);
+        // write straight into the image's pixel array when it has one
+        int[] pixels = IO.getPixels(buffer);
+        for (int z = 0; z < 512; z += step) {
+            for (int x = 0; x < 512; x += step) {
+                if (!isModified(x, z, step)) {
+                    // leave pixels of unchanged chunks alone
+                    continue;
+                }
+                int argb = source[getIndex(x, z)];
                 if (argb == 0) {
                     // skipping 0 prevents overwrite existing
                     // parts of the buffer of existing images
@@ -144,19 +262,40 @@ public class TileImage extends Keyed {
                 }
                 if (step > 1) {
                     // merge pixel colors instead of skipping them
-                    argb = downSample(x, z, argb, step);
+                    argb = downSample(source, x, z, argb, step);
+                }
+                int pixelX = baseX + (x >> zoom);
+                int pixelZ = baseZ + (z >> zoom);
+                if (pixels != null) {
+                    pixels[pixelZ * buffer.getWidth() + pixelX] = this.io.color(argb);
+                } else {
+                    buffer.setRGB(pixelX, pixelZ, this.io.color(argb));
+                }
+            }
+        }
+    }
+
+    private boolean isModified(int x, int z, int step) {
+        if (this.modifiedChunks == null) {
+            return true;
+        }
+        // zoomed out far enough, one pixel covers more than one chunk
+        for (int chunkX = x >> 4; chunkX <= (x + step - 1) >> 4; chunkX++) {
+            for (int chunkZ = z >> 4; chunkZ <= (z + step - 1) >> 4; chunkZ++) {
+                if (this.modifiedChunks.get(chunkX + (chunkZ << 5))) {
+                    return true;
                 }
-                buffer.setRGB(baseX + (x >> zoom), baseZ + (z >> zoom), this.io.color(argb));
             }
         }
+        return false;
     }
 
-    private int downSample(int x, int z, int rgb, int step) {
+    private int downSample(int @NotNull [] source, int x, int z, int rgb, int step) {
         int a = 0, r = 0, g = 0, b = 0, c = 0;
         for (int i = 0; i < step; i++) {
             for (int j = 0; j < step; j++) {
                 if (i != 0 && j != 0) {
-                    rgb = getPixel(x + i, z + j);
+                    rgb = source[getIndex(x + i, z + j)];
                 }
                 a += Colors.alpha(rgb);
                 r += Colors.red(rgb);
@@ -24,6 +24,7 @@
 package net.pl3x.map.core.image.io;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -36,8 +37,10 @@ import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
 import net.pl3x.map.core.Keyed;
+import net.pl3x.map.core.Pl3xMap;
 import net.pl3x.map.core.configuration.Config;
 import net.pl3x.map.core.log.Logger;
+import net.pl3x.map.core.metrics.MetricRegistry;
 import net.pl3x.map.core.registry.Registry;
 import net.pl3x.map.core.util.FileUtil;
 import org.jetbrains.annotations.NotNull;
@@ -52,6 +55,8 @@ public abstract class IO {
         IO.register("jpg", new Jpg());
         IO.register("jpeg", get("jpg"));
         IO.register("png", new Png());
+        IO.register("png8", new Png8());
+        IO.register("webp", new Webp());
     }
 
     public static void register(@NotNull String name, @NotNull Type type) {
@@ -77,6 +82,36 @@ public abstract class IO {
         return type;
     }
 
+    /**
+     * Get the backing pixel array of an int ARGB image.
+     *
+     * @param buffer image
+     * @return pixels in ARGB, row by row, or null if the image is not backed by one
+     */
+    public static int @Nullable [] getPixels(@NotNull BufferedImage buffer) {
+        if (buffer.getType() != BufferedImage.TYPE_INT_ARGB || buffer.getRaster().getParent() != null) {
+            return null;
+        }
+        return ((DataBufferInt) buffer.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Convert an image to int ARGB, so its pixels can be accessed with {@link #getPixels(BufferedImage)}.
+     *
+     * @param buffer image
+     * @return the image itself if it already is int ARGB, otherwise a converted copy
+     */
+    public static @NotNull BufferedImage toArgb(@NotNull BufferedImage buffer) {
+        if (getPixels(buffer) != null) {
+            return buffer;
+        }
+        int width = buffer.getWidth();
+        int height = buffer.getHeight();
+        BufferedImage argb = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        argb.setRGB(0, 0, width, height, buffer.getRGB(0, 0, width, height, null, 0, width), 0, width);
+        return argb;
+    }
+
     public abstract static class Type extends Keyed {
         public Type(@NotNull String key) {
             super(key);
@@ -109,7 +144,16 @@ public abstract class IO {
             return buffer;
         }
 
-        public void write(@NotNull Path path, @NotNull BufferedImage buffer) {
+        /**
+         * Write an image to disk.
+         *
+         * @param path   file to write
+         * @param buffer image to write
+         * @return true if the image was written
+         */
+        public boolean write(@NotNull Path path, @NotNull BufferedImage buffer) {
+            // image io encodes while it writes, so all of it counts as encoding
+            long start = System.nanoTime();
             Path tmp = FileUtil.tmp(path);
             ImageWriter writer = null;
             try (ImageOutputStream out = ImageIO.createImageOutputStream(tmp.toFile())) {
@@ -128,17 +172,59 @@ public abstract class IO {
             } catch (IOException e) {
                 Logger.warn("Could not write tile image: " + tmp);
                 e.printStackTrace();
+                return false;
             } finally {
                 if (writer != null) {
                     writer.dispose();
                 }
             }
+            Pl3xMap.api().getMetricRegistry().record(MetricRegistry.Timer.TILE_ENCODE, System.nanoTime() - start);
+            try {
+                FileUtil.atomicMove(tmp, path);
+            } catch (IOException e) {
+                Logger.warn("Could not write tile image: " + path);
+                e.printStackTrace();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Encode an image to a temporary file and move it in place when done.
+         *
+         * @param path    file to write
+         * @param buffer  image to encode
+         * @param encoder encodes the pixels in ARGB to the given file
+         * @return true if the image was written
+         */
+        protected boolean writeAtomic(@NotNull Path path, @NotNull BufferedImage buffer, @NotNull Encoder encoder) {
+            int width = buffer.getWidth();
+            int height = buffer.getHeight();
+            int[] pixels = getPixels(buffer);
+            if (pixels == null) {
+                pixels = buffer.getRGB(0, 0, width, height, null, 0, width);
+            }
+            Path tmp = FileUtil.tmp(path);
+            try {
+                encoder.encode(tmp, pixels, width, height);
+            } catch (IOException e) {
+                Logger.warn("Could not write tile image: " + tmp);
+                e.printStackTrace();
+                return false;
+            }
             try {
                 FileUtil.atomicMove(tmp, path);
             } catch (IOException e) {
                 Logger.warn("Could not write tile image: " + path);
                 e.printStackTrace();
+                return false;
             }
+            return true;
         }
     }
+
+    @FunctionalInterface
+    public interface Encoder {
+        void encode(@NotNull Path path, int @NotNull [] argb, int width, int height) throws IOException;
+    }
 }
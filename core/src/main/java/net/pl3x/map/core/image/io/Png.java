@@ -23,8 +23,36 @@
  */
 package net.pl3x.map.core.image.io;
 
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import net.pl3x.map.core.configuration.Config;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
 public class Png extends IO.Type {
     public Png() {
         super("png");
     }
+
+    @Override
+    public @Nullable BufferedImage read(@NotNull Path path) {
+        BufferedImage buffer = super.read(path);
+        return buffer == null ? null : convert(buffer);
+    }
+
+    /**
+     * Convert a decoded tile to int argb, so pixels can be written and encoded straight from the array.
+     *
+     * @param buffer decoded tile
+     * @return tile in int argb
+     */
+    protected @NotNull BufferedImage convert(@NotNull BufferedImage buffer) {
+        return IO.toArgb(buffer);
+    }
+
+    @Override
+    public boolean write(@NotNull Path path, @NotNull BufferedImage buffer) {
+        return writeAtomic(path, buffer, (tmp, argb, width, height) -> PngEncoder.write(tmp, argb, width, height,
+                Config.WEB_PNG_COMPRESSION, PngEncoder.Filter.get(Config.WEB_PNG_FILTER)));
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.image.io;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.nio.file.Path;
+import java.util.Hashtable;
+import net.pl3x.map.core.configuration.Config;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Png tiles with an 8-bit palette. Lossless for tiles with up to 256 colors,
+ * tiles with more colors get a palette quantized from their own colors.
+ * <p>
+ * Tiles read from disk remember their palette, so writing them back only
+ * quantizes the colors that were not in it.
+ */
+public class Png8 extends Png {
+    private static final String PALETTE = "pl3xmap:palette";
+
+    @Override
+    protected @NotNull BufferedImage convert(@NotNull BufferedImage buffer) {
+        BufferedImage argb = super.convert(buffer);
+        if (!(buffer.getColorModel() instanceof IndexColorModel model)) {
+            return argb;
+        }
+        int[] palette = new int[model.getMapSize()];
+        model.getRGBs(palette);
+        Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put(PALETTE, palette);
+        return new BufferedImage(argb.getColorModel(), argb.getRaster(), false, properties);
+    }
+
+    @Override
+    public boolean write(@NotNull Path path, @NotNull BufferedImage buffer) {
+        int[] previous = buffer.getProperty(PALETTE) instanceof int[] palette ? palette : null;
+        return writeAtomic(path, buffer, (tmp, argb, width, height) -> PngEncoder.writeIndexed(tmp, argb, width, height,
+                Config.WEB_PNG_COMPRESSION, previous));
+    }
+}
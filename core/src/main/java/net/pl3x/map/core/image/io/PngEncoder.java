@@ -0,0 +1,572 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.image.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import net.pl3x.map.core.Pl3xMap;
+import net.pl3x.map.core.metrics.MetricRegistry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Minimal 8-bit PNG encoder for tiles, in truecolor with alpha or indexed color.
+ * <p>
+ * Works straight on the ARGB pixel array, keeps a {@link Deflater} and all scratch buffers per
+ * thread, and writes the finished file with a single channel write.
+ */
+public final class PngEncoder {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] IEND = {0, 0, 0, 0, 'I', 'E', 'N', 'D', (byte) 0xAE, 0x42, 0x60, (byte) 0x82};
+
+    private static final ThreadLocal<@NotNull Context> CONTEXT = ThreadLocal.withInitial(Context::new);
+
+    /**
+     * Encode pixels as a truecolor png and write them to a file.
+     *
+     * @param path   file to write
+     * @param argb   pixels in ARGB, row by row
+     * @param width  image width
+     * @param height image height
+     * @param level  deflate compression level (0-9)
+     * @param filter row filter strategy
+     * @throws IOException if the file could not be written
+     */
+    public static void write(@NotNull Path path, int @NotNull [] argb, int width, int height, int level, @NotNull Filter filter) throws IOException {
+        long start = System.nanoTime();
+        Context ctx = CONTEXT.get();
+        int stride = width * 4;
+        int rawLength = (stride + 1) * height;
+        byte[] raw = ctx.raw(rawLength, stride);
+
+        // convert and filter the scanlines
+        byte[] prev = ctx.prev;
+        byte[] cur = ctx.cur;
+        Arrays.fill(prev, 0, stride, (byte) 0);
+        for (int y = 0, pos = 0; y < height; y++, pos += stride + 1) {
+            for (int x = 0, i = y * width; x < stride; x += 4, i++) {
+                int pixel = argb[i];
+                cur[x] = (byte) (pixel >> 16);
+                cur[x + 1] = (byte) (pixel >> 8);
+                cur[x + 2] = (byte) pixel;
+                cur[x + 3] = (byte) (pixel >> 24);
+            }
+            filterRow(filter, cur, prev, stride, raw, pos, ctx.candidates);
+            byte[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        ctx.prev = prev;
+        ctx.cur = cur;
+
+        int dataLength = deflate(ctx, rawLength, level, filter == Filter.NONE ? Deflater.DEFAULT_STRATEGY : Deflater.FILTERED);
+
+        byte[] header = new byte[8 + 25 + 8];
+        writeHeader(ctx, header, width, height, 6); // truecolor with alpha
+        writeFile(path, ctx, header, dataLength, start);
+    }
+
+    /**
+     * Encode pixels as an 8-bit indexed png and write them to a file.
+     * <p>
+     * Tiles with up to 256 colors are stored losslessly. Tiles with more colors
+     * get a palette quantized from their own colors.
+     *
+     * @param path   file to write
+     * @param argb   pixels in ARGB, row by row
+     * @param width  image width
+     * @param height image height
+     * @param level  deflate compression level (0-9)
+     * @throws IOException if the file could not be written
+     */
+    public static void writeIndexed(@NotNull Path path, int @NotNull [] argb, int width, int height, int level) throws IOException {
+        writeIndexed(path, argb, width, height, level, null);
+    }
+
+    /**
+     * Encode pixels as an 8-bit indexed png and write them to a file, reusing the palette the
+     * image was read with. Colors still in that palette keep their entry, only new colors are
+     * quantized into the entries left over, so re-encoding a tile does not shift the colors of
+     * the parts that did not change.
+     *
+     * @param path     file to write
+     * @param argb     pixels in ARGB, row by row
+     * @param width    image width
+     * @param height   image height
+     * @param level    deflate compression level (0-9)
+     * @param previous palette of the existing image in ARGB, or null
+     * @throws IOException if the file could not be written
+     */
+    public static void writeIndexed(@NotNull Path path, int @NotNull [] argb, int width, int height, int level, int @Nullable [] previous) throws IOException {
+        long start = System.nanoTime();
+        Context ctx = CONTEXT.get();
+        int rawLength = (width + 1) * height;
+        byte[] raw = ctx.raw(rawLength, width);
+
+        Palette palette = Palette.of(argb, width * height, previous);
+        for (int y = 0, pos = 0; y < height; y++) {
+            raw[pos++] = 0; // indexed images compress best unfiltered
+            for (int x = 0, i = y * width; x < width; x++, i++) {
+                raw[pos++] = (byte) palette.indexOf(argb[i]);
+            }
+        }
+
+        int dataLength = deflate(ctx, rawLength, level, Deflater.DEFAULT_STRATEGY);
+
+        int[] colors = palette.colors();
+        int transparent = palette.transparent();
+        byte[] header = new byte[8 + 25 + 12 + colors.length * 3 + (transparent > 0 ? 12 + transparent : 0) + 8];
+        writeHeader(ctx, header, width, height, 3); // indexed color
+
+        int pos = 33;
+        putInt(header, pos, colors.length * 3);
+        putType(header, pos + 4, "PLTE");
+        for (int i = 0, j = pos + 8; i < colors.length; i++) {
+            header[j++] = (byte) (colors[i] >> 16);
+            header[j++] = (byte) (colors[i] >> 8);
+            header[j++] = (byte) colors[i];
+        }
+        pos += 8 + colors.length * 3;
+        putInt(header, pos, crc(ctx.crc, header, pos - colors.length * 3 - 4, colors.length * 3 + 4));
+        pos += 4;
+
+        if (transparent > 0) {
+            // translucent colors are sorted first, so only those need an alpha entry
+            putInt(header, pos, transparent);
+            putType(header, pos + 4, "tRNS");
+            for (int i = 0; i < transparent; i++) {
+                header[pos + 8 + i] = (byte) (colors[i] >>> 24);
+            }
+            putInt(header, pos + 8 + transparent, crc(ctx.crc, header, pos + 4, transparent + 4));
+        }
+
+        writeFile(path, ctx, header, dataLength, start);
+    }
+
+    private static int deflate(@NotNull Context ctx, int rawLength, int level, int strategy) {
+        Deflater deflater = ctx.deflater;
+        deflater.reset();
+        deflater.setLevel(Math.max(0, Math.min(9, level)));
+        deflater.setStrategy(strategy);
+        deflater.setInput(ctx.raw, 0, rawLength);
+        deflater.finish();
+        byte[] out = ctx.out;
+        int end = 0;
+        while (!deflater.finished()) {
+            if (end == out.length) {
+                out = ctx.out = Arrays.copyOf(out, out.length << 1);
+            }
+            end += deflater.deflate(out, end, out.length - end);
+        }
+        return end;
+    }
+
+    private static void writeHeader(@NotNull Context ctx, byte @NotNull [] header, int width, int height, int colorType) {
+        System.arraycopy(SIGNATURE, 0, header, 0, 8);
+        putInt(header, 8, 13);
+        putType(header, 12, "IHDR");
+        putInt(header, 16, width);
+        putInt(header, 20, height);
+        header[24] = 8; // bit depth
+        header[25] = (byte) colorType;
+        header[26] = 0; // compression method
+        header[27] = 0; // filter method
+        header[28] = 0; // interlace method
+        putInt(header, 29, crc(ctx.crc, header, 12, 17));
+    }
+
+    private static void writeFile(@NotNull Path path, @NotNull Context ctx, byte @NotNull [] header, int dataLength, long start) throws IOException {
+        // the header ends with the length and type of the data chunk
+        int pos = header.length - 8;
+        putInt(header, pos, dataLength);
+        putType(header, pos + 4, "IDAT");
+
+        ctx.crc.reset();
+        ctx.crc.update(header, pos + 4, 4);
+        ctx.crc.update(ctx.out, 0, dataLength);
+        byte[] trailer = new byte[4 + IEND.length];
+        putInt(trailer, 0, (int) ctx.crc.getValue());
+        System.arraycopy(IEND, 0, trailer, 4, IEND.length);
+
+        MetricRegistry metrics = Pl3xMap.api().getMetricRegistry();
+        long encoded = System.nanoTime();
+        metrics.record(MetricRegistry.Timer.TILE_ENCODE, encoded - start);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] buffers = {ByteBuffer.wrap(header), ByteBuffer.wrap(ctx.out, 0, dataLength), ByteBuffer.wrap(trailer)};
+            while (buffers[2].hasRemaining()) {
+                channel.write(buffers);
+            }
+        }
+        metrics.record(MetricRegistry.Timer.TILE_WRITE, System.nanoTime() - encoded);
+    }
+
+    private static void filterRow(@NotNull Filter filter, byte @NotNull [] cur, byte @NotNull [] prev, int stride, byte @NotNull [] raw, int pos, byte @NotNull [] @NotNull [] candidates) {
+        if (filter != Filter.ADAPTIVE) {
+            raw[pos] = (byte) filter.ordinal();
+            applyFilter(filter.ordinal(), cur, prev, stride, raw, pos + 1);
+            return;
+        }
+        // pick the filter with the smallest sum of absolute differences
+        int best = 0;
+        long bestSum = Long.MAX_VALUE;
+        for (int type = 0; type < candidates.length; type++) {
+            byte[] candidate = candidates[type];
+            applyFilter(type, cur, prev, stride, candidate, 0);
+            long sum = 0;
+            for (int i = 0; i < stride && sum < bestSum; i++) {
+                sum += Math.abs(candidate[i]);
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = type;
+            }
+        }
+        raw[pos] = (byte) best;
+        System.arraycopy(candidates[best], 0, raw, pos + 1, stride);
+    }
+
+    private static void applyFilter(int type, byte @NotNull [] cur, byte @NotNull [] prev, int stride, byte @NotNull [] out, int pos) {
+        switch (type) {
+            case 0 -> System.arraycopy(cur, 0, out, pos, stride);
+            case 1 -> {
+                for (int i = 0; i < stride; i++) {
+                    int left = i < 4 ? 0 : cur[i - 4] & 0xFF;
+                    out[pos + i] = (byte) (cur[i] - left);
+                }
+            }
+            case 2 -> {
+                for (int i = 0; i < stride; i++) {
+                    out[pos + i] = (byte) (cur[i] - prev[i]);
+                }
+            }
+            case 3 -> {
+                for (int i = 0; i < stride; i++) {
+                    int left = i < 4 ? 0 : cur[i - 4] & 0xFF;
+                    out[pos + i] = (byte) (cur[i] - ((left + (prev[i] & 0xFF)) >>> 1));
+                }
+            }
+            default -> {
+                for (int i = 0; i < stride; i++) {
+                    int a = i < 4 ? 0 : cur[i - 4] & 0xFF;
+                    int b = prev[i] & 0xFF;
+                    int c = i < 4 ? 0 : prev[i - 4] & 0xFF;
+                    out[pos + i] = (byte) (cur[i] - paeth(a, b, c));
+                }
+            }
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private static int crc(@NotNull CRC32 crc, byte @NotNull [] bytes, int offset, int length) {
+        crc.reset();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static void putInt(byte @NotNull [] bytes, int pos, int value) {
+        bytes[pos] = (byte) (value >>> 24);
+        bytes[pos + 1] = (byte) (value >>> 16);
+        bytes[pos + 2] = (byte) (value >>> 8);
+        bytes[pos + 3] = (byte) value;
+    }
+
+    private static void putType(byte @NotNull [] bytes, int pos, @NotNull String type) {
+        for (int i = 0; i < 4; i++) {
+            bytes[pos + i] = (byte) type.charAt(i);
+        }
+    }
+
+    public enum Filter {
+        NONE, SUB, UP, AVERAGE, PAETH, ADAPTIVE;
+
+        public static @NotNull Filter get(@NotNull String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return ADAPTIVE;
+            }
+        }
+    }
+
+    private static final class Palette {
+        private final int[] keys;
+        private final int[] values;
+        private final boolean[] used;
+        private final int mask;
+
+        private int[] colors;
+        private int transparent;
+
+        private Palette(int capacity) {
+            int size = Integer.highestOneBit(Math.max(capacity, 16) * 2 - 1) << 1;
+            this.keys = new int[size];
+            this.values = new int[size];
+            this.used = new boolean[size];
+            this.mask = size - 1;
+        }
+
+        private static @NotNull Palette of(int @NotNull [] argb, int length, int @Nullable [] previous) {
+            Palette palette = new Palette(length);
+
+            // count each color, fully transparent pixels are all the same color
+            int[] unique = new int[Math.min(length, 1 << 16)];
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                int color = normalize(argb[i]);
+                int slot = palette.slot(color);
+                if (!palette.used[slot]) {
+                    palette.used[slot] = true;
+                    palette.keys[slot] = color;
+                    if (count == unique.length) {
+                        unique = Arrays.copyOf(unique, unique.length << 1);
+                    }
+                    unique[count++] = color;
+                }
+                palette.values[slot]++;
+            }
+            unique = Arrays.copyOf(unique, count);
+
+            int[] colors;
+            if (count <= 256) {
+                colors = unique;
+            } else if (previous != null) {
+                colors = palette.reuse(unique, previous);
+            } else {
+                colors = palette.quantize(unique, 256);
+            }
+
+            // translucent colors go first to keep the transparency chunk short
+            int[] sorted = new int[colors.length];
+            int pos = 0;
+            for (int color : colors) {
+                if (color >>> 24 != 0xFF) {
+                    sorted[pos++] = color;
+                }
+            }
+            palette.transparent = pos;
+            for (int color : colors) {
+                if (color >>> 24 == 0xFF) {
+                    sorted[pos++] = color;
+                }
+            }
+            palette.colors = sorted;
+
+            // point every color at its palette entry
+            for (int color : unique) {
+                palette.values[palette.slot(color)] = nearest(sorted, color);
+            }
+            return palette;
+        }
+
+        private int @NotNull [] colors() {
+            return this.colors;
+        }
+
+        private int transparent() {
+            return this.transparent;
+        }
+
+        private int indexOf(int argb) {
+            return this.values[slot(normalize(argb))];
+        }
+
+        private int slot(int color) {
+            int slot = (color * 0x9E3779B1) >>> 7 & this.mask;
+            while (this.used[slot] && this.keys[slot] != color) {
+                slot = (slot + 1) & this.mask;
+            }
+            return slot;
+        }
+
+        private int count(int color) {
+            return this.values[slot(color)];
+        }
+
+        private int @NotNull [] reuse(int @NotNull [] unique, int @NotNull [] previous) {
+            // keep the entries of the previous palette that are still in the image
+            boolean[] kept = new boolean[this.keys.length];
+            int[] colors = new int[256];
+            int fixed = 0;
+            for (int color : previous) {
+                int slot = slot(normalize(color));
+                if (this.used[slot] && !kept[slot] && fixed < colors.length) {
+                    kept[slot] = true;
+                    colors[fixed++] = this.keys[slot];
+                }
+            }
+
+            // quantize the new colors into the entries left over, or match them
+            // to the nearest kept entry if the previous palette is still full
+            int[] added = Arrays.stream(unique).filter(color -> !kept[slot(color)]).toArray();
+            int[] quantized = fixed < colors.length && added.length > 0 ? quantize(added, colors.length - fixed) : new int[0];
+            System.arraycopy(quantized, 0, colors, fixed, quantized.length);
+            return Arrays.copyOf(colors, fixed + quantized.length);
+        }
+
+        private int @NotNull [] quantize(int @NotNull [] unique, int size) {
+            // median cut, keeping fully transparent as its own entry
+            int[] items = Arrays.stream(unique).filter(color -> color != 0).toArray();
+            boolean hasTransparent = items.length < unique.length;
+            int maxBoxes = hasTransparent ? size - 1 : size;
+            if (items.length == 0 || maxBoxes < 1) {
+                return hasTransparent ? new int[]{0} : new int[0];
+            }
+
+            int[] starts = new int[maxBoxes];
+            int[] ends = new int[maxBoxes];
+            int boxes = 1;
+            ends[0] = items.length;
+            while (boxes < maxBoxes) {
+                // split the box with the widest channel
+                int best = -1;
+                int bestRange = 0;
+                int bestShift = 0;
+                for (int box = 0; box < boxes; box++) {
+                    if (ends[box] - starts[box] < 2) {
+                        continue;
+                    }
+                    for (int shift = 0; shift < 32; shift += 8) {
+                        int min = 0xFF;
+                        int max = 0;
+                        for (int i = starts[box]; i < ends[box]; i++) {
+                            int value = items[i] >>> shift & 0xFF;
+                            min = Math.min(min, value);
+                            max = Math.max(max, value);
+                        }
+                        if (max - min > bestRange) {
+                            bestRange = max - min;
+                            best = box;
+                            bestShift = shift;
+                        }
+                    }
+                }
+                if (best < 0) {
+                    break;
+                }
+
+                // sort the box along that channel and cut it at the median pixel
+                int start = starts[best];
+                int end = ends[best];
+                long[] sorted = new long[end - start];
+                for (int i = start; i < end; i++) {
+                    sorted[i - start] = ((long) (items[i] >>> bestShift & 0xFF) << 32) | (items[i] & 0xFFFFFFFFL);
+                }
+                Arrays.sort(sorted);
+                long total = 0;
+                for (int i = start; i < end; i++) {
+                    items[i] = (int) sorted[i - start];
+                    total += count(items[i]);
+                }
+                int cut = start + 1;
+                long seen = count(items[start]);
+                while (cut < end - 1 && seen * 2 < total) {
+                    seen += count(items[cut++]);
+                }
+                starts[boxes] = cut;
+                ends[boxes] = end;
+                ends[best] = cut;
+                boxes++;
+            }
+
+            // each box becomes the pixel weighted average of its colors
+            int[] colors = new int[boxes + (hasTransparent ? 1 : 0)];
+            for (int box = 0; box < boxes; box++) {
+                long a = 0, r = 0, g = 0, b = 0, c = 0;
+                for (int i = starts[box]; i < ends[box]; i++) {
+                    int color = items[i];
+                    int weight = count(color);
+                    a += (long) (color >>> 24) * weight;
+                    r += (long) (color >> 16 & 0xFF) * weight;
+                    g += (long) (color >> 8 & 0xFF) * weight;
+                    b += (long) (color & 0xFF) * weight;
+                    c += weight;
+                }
+                colors[box] = c == 0 ? 0 : (int) (a / c) << 24 | (int) (r / c) << 16 | (int) (g / c) << 8 | (int) (b / c);
+            }
+            return colors;
+        }
+
+        private static int nearest(int @NotNull [] colors, int color) {
+            int best = 0;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < colors.length && bestDistance > 0; i++) {
+                int distance = 0;
+                for (int shift = 0; shift < 32; shift += 8) {
+                    int diff = (colors[i] >>> shift & 0xFF) - (color >>> shift & 0xFF);
+                    distance += diff * diff;
+                }
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        private static int normalize(int argb) {
+            return argb >>> 24 == 0 ? 0 : argb;
+        }
+    }
+
+    private static class Context {
+        private final Deflater deflater = new Deflater();
+        private final CRC32 crc = new CRC32();
+        private final byte[][] candidates = new byte[5][];
+        private byte[] raw = new byte[0];
+        private byte[] prev = new byte[0];
+        private byte[] cur = new byte[0];
+        private byte[] out = new byte[1 << 16];
+
+        private byte @NotNull [] raw(int length, int stride) {
+            if (this.raw.length < length) {
+                this.raw = new byte[length];
+            }
+            if (this.cur.length < stride) {
+                this.prev = new byte[stride];
+                this.cur = new byte[stride];
+                for (int i = 0; i < this.candidates.length; i++) {
+                    this.candidates[i] = new byte[stride];
+                }
+            }
+            return this.raw;
+        }
+    }
+}
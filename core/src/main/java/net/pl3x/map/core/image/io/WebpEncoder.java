@@ -0,0 +1,656 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.image.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import net.pl3x.map.core.Pl3xMap;
+import net.pl3x.map.core.metrics.MetricRegistry;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Minimal lossless WebP (VP8L) encoder for tiles.
+ * <p>
+ * Applies the subtract green and predictor transforms, finds backward references with hash
+ * chains and writes one set of prefix codes for the whole image. No color cache and no meta
+ * prefix codes, which keeps it simple while still beating png on most tiles.
+ */
+public final class WebpEncoder {
+    private static final int[] CODE_LENGTH_ORDER = {17, 18, 0, 1, 2, 3, 4, 5, 16, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15};
+
+    private static final int NUM_LITERAL_CODES = 256;
+    private static final int NUM_LENGTH_CODES = 24;
+    private static final int NUM_DISTANCE_CODES = 40;
+
+    private static final int PREDICTOR_BITS = 5;
+    private static final int NUM_PREDICTORS = 14;
+
+    private static final int MIN_MATCH = 3;
+    private static final int MAX_MATCH = 4096;
+    private static final int MAX_DISTANCE = (1 << 20) - 120;
+    private static final int MAX_CHAIN = 32;
+    private static final int HASH_BITS = 16;
+
+    private static final ThreadLocal<@NotNull BitWriter> WRITER = ThreadLocal.withInitial(BitWriter::new);
+
+    /**
+     * Encode pixels and write them to a file.
+     *
+     * @param path   file to write
+     * @param argb   pixels in ARGB, row by row
+     * @param width  image width
+     * @param height image height
+     * @throws IOException if the file could not be written
+     */
+    public static void write(@NotNull Path path, int @NotNull [] argb, int width, int height) throws IOException {
+        long start = System.nanoTime();
+        BitWriter out = WRITER.get();
+        out.reset();
+
+        int length = width * height;
+        boolean alpha = false;
+        int[] pixels = new int[length];
+        for (int i = 0; i < length; i++) {
+            int pixel = argb[i];
+            alpha |= pixel >>> 24 != 0xFF;
+            // subtract green
+            int green = pixel >> 8 & 0xFF;
+            pixels[i] = (pixel & 0xFF00FF00) | ((pixel >> 16) - green & 0xFF) << 16 | ((pixel - green) & 0xFF);
+        }
+
+        // header
+        out.writeBits(0x2F, 8);
+        out.writeBits(width - 1, 14);
+        out.writeBits(height - 1, 14);
+        out.writeBits(alpha ? 1 : 0, 1);
+        out.writeBits(0, 3);
+
+        // subtract green transform
+        out.writeBits(1, 1);
+        out.writeBits(2, 2);
+
+        // predictor transform
+        int tilesX = (width + (1 << PREDICTOR_BITS) - 1) >> PREDICTOR_BITS;
+        int tilesY = (height + (1 << PREDICTOR_BITS) - 1) >> PREDICTOR_BITS;
+        int[] modes = new int[tilesX * tilesY];
+        int[] residuals = predict(pixels, width, height, tilesX, modes);
+        out.writeBits(1, 1);
+        out.writeBits(0, 2);
+        out.writeBits(PREDICTOR_BITS - 2, 3);
+        for (int i = 0; i < modes.length; i++) {
+            modes[i] = 0xFF000000 | modes[i] << 8;
+        }
+        writeImage(out, modes, tilesX, false);
+
+        // no more transforms
+        out.writeBits(0, 1);
+
+        writeImage(out, residuals, width, true);
+
+        byte[] data = out.finish();
+        int size = out.size();
+        int padding = size & 1;
+        ByteBuffer header = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'}).putInt(4 + 8 + size + padding)
+                .put(new byte[]{'W', 'E', 'B', 'P'}).put(new byte[]{'V', 'P', '8', 'L'}).putInt(size)
+                .flip();
+
+        MetricRegistry metrics = Pl3xMap.api().getMetricRegistry();
+        long encoded = System.nanoTime();
+        metrics.record(MetricRegistry.Timer.TILE_ENCODE, encoded - start);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] buffers = {header, ByteBuffer.wrap(data, 0, size), ByteBuffer.wrap(new byte[padding])};
+            while (buffers[1].hasRemaining() || buffers[2].hasRemaining()) {
+                channel.write(buffers);
+            }
+        }
+        metrics.record(MetricRegistry.Timer.TILE_WRITE, System.nanoTime() - encoded);
+    }
+
+    private static int @NotNull [] predict(int @NotNull [] pixels, int width, int height, int tilesX, int @NotNull [] modes) {
+        int[] residuals = new int[pixels.length];
+        int tileSize = 1 << PREDICTOR_BITS;
+        for (int tile = 0; tile < modes.length; tile++) {
+            int startX = (tile % tilesX) << PREDICTOR_BITS;
+            int startY = (tile / tilesX) << PREDICTOR_BITS;
+            int endX = Math.min(startX + tileSize, width);
+            int endY = Math.min(startY + tileSize, height);
+
+            // pick the predictor with the smallest residuals in this tile
+            int best = 0;
+            long bestCost = Long.MAX_VALUE;
+            for (int mode = 0; mode < NUM_PREDICTORS; mode++) {
+                long cost = 0;
+                for (int y = startY; y < endY && cost < bestCost; y++) {
+                    for (int x = startX; x < endX; x++) {
+                        int i = y * width + x;
+                        int residual = sub(pixels[i], predict(pixels, width, x, y, i, mode));
+                        cost += Math.abs((byte) residual) + Math.abs((byte) (residual >> 8))
+                                + Math.abs((byte) (residual >> 16)) + Math.abs((byte) (residual >> 24));
+                    }
+                }
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = mode;
+                }
+            }
+            modes[tile] = best;
+
+            for (int y = startY; y < endY; y++) {
+                for (int x = startX; x < endX; x++) {
+                    int i = y * width + x;
+                    residuals[i] = sub(pixels[i], predict(pixels, width, x, y, i, best));
+                }
+            }
+        }
+        return residuals;
+    }
+
+    private static int predict(int @NotNull [] p, int width, int x, int y, int i, int mode) {
+        if (y == 0) {
+            return x == 0 ? 0xFF000000 : p[i - 1];
+        }
+        if (x == 0) {
+            return p[i - width];
+        }
+        int left = p[i - 1];
+        int top = p[i - width];
+        // the rightmost column uses the leftmost pixel of the current row, which is next in memory
+        int topRight = p[i - width + 1];
+        int topLeft = p[i - width - 1];
+        return switch (mode) {
+            case 0 -> 0xFF000000;
+            case 1 -> left;
+            case 2 -> top;
+            case 3 -> topRight;
+            case 4 -> topLeft;
+            case 5 -> average(average(left, topRight), top);
+            case 6 -> average(left, topLeft);
+            case 7 -> average(left, top);
+            case 8 -> average(topLeft, top);
+            case 9 -> average(top, topRight);
+            case 10 -> average(average(left, topLeft), average(top, topRight));
+            case 11 -> select(left, top, topLeft);
+            case 12 -> clampAddSubtractFull(left, top, topLeft);
+            default -> clampAddSubtractHalf(average(left, top), topLeft);
+        };
+    }
+
+    private static int average(int a, int b) {
+        return (((a ^ b) & 0xFEFEFEFE) >>> 1) + (a & b);
+    }
+
+    private static int sub(int a, int b) {
+        int alphaAndGreen = 0x00FF00FF + (a & 0xFF00FF00) - (b & 0xFF00FF00);
+        int redAndBlue = 0xFF00FF00 + (a & 0x00FF00FF) - (b & 0x00FF00FF);
+        return (alphaAndGreen & 0xFF00FF00) | (redAndBlue & 0x00FF00FF);
+    }
+
+    private static int select(int left, int top, int topLeft) {
+        int distanceLeft = 0;
+        int distanceTop = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int l = left >>> shift & 0xFF;
+            int t = top >>> shift & 0xFF;
+            int estimate = l + t - (topLeft >>> shift & 0xFF);
+            distanceLeft += Math.abs(estimate - l);
+            distanceTop += Math.abs(estimate - t);
+        }
+        return distanceLeft < distanceTop ? left : top;
+    }
+
+    private static int clampAddSubtractFull(int a, int b, int c) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int value = (a >>> shift & 0xFF) + (b >>> shift & 0xFF) - (c >>> shift & 0xFF);
+            result |= clamp(value) << shift;
+        }
+        return result;
+    }
+
+    private static int clampAddSubtractHalf(int a, int b) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int ca = a >>> shift & 0xFF;
+            int value = ca + (ca - (b >>> shift & 0xFF)) / 2;
+            result |= clamp(value) << shift;
+        }
+        return result;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : Math.min(value, 0xFF);
+    }
+
+    private static void writeImage(@NotNull BitWriter out, int @NotNull [] pixels, int width, boolean main) {
+        // tokens are pairs of (copy length, distance code) or (0, pixel)
+        int[] tokens = main ? tokenize(pixels, width) : literals(pixels);
+        int count = tokens.length >> 1;
+
+        int[] green = new int[NUM_LITERAL_CODES + NUM_LENGTH_CODES];
+        int[] red = new int[NUM_LITERAL_CODES];
+        int[] blue = new int[NUM_LITERAL_CODES];
+        int[] alpha = new int[NUM_LITERAL_CODES];
+        int[] distance = new int[NUM_DISTANCE_CODES];
+        for (int t = 0; t < count; t++) {
+            int copy = tokens[t << 1];
+            int value = tokens[(t << 1) + 1];
+            if (copy == 0) {
+                green[value >> 8 & 0xFF]++;
+                red[value >> 16 & 0xFF]++;
+                blue[value & 0xFF]++;
+                alpha[value >>> 24]++;
+            } else {
+                green[NUM_LITERAL_CODES + prefix(copy)]++;
+                distance[prefix(value)]++;
+            }
+        }
+
+        // no color cache
+        out.writeBits(0, 1);
+        if (main) {
+            // no meta prefix codes
+            out.writeBits(0, 1);
+        }
+
+        PrefixCode greenCode = writeCode(out, green);
+        PrefixCode redCode = writeCode(out, red);
+        PrefixCode blueCode = writeCode(out, blue);
+        PrefixCode alphaCode = writeCode(out, alpha);
+        PrefixCode distanceCode = writeCode(out, distance);
+
+        for (int t = 0; t < count; t++) {
+            int copy = tokens[t << 1];
+            int value = tokens[(t << 1) + 1];
+            if (copy == 0) {
+                greenCode.write(out, value >> 8 & 0xFF);
+                redCode.write(out, value >> 16 & 0xFF);
+                blueCode.write(out, value & 0xFF);
+                alphaCode.write(out, value >>> 24);
+            } else {
+                greenCode.write(out, NUM_LITERAL_CODES + prefix(copy));
+                writeExtraBits(out, copy);
+                distanceCode.write(out, prefix(value));
+                writeExtraBits(out, value);
+            }
+        }
+    }
+
+    private static int @NotNull [] literals(int @NotNull [] pixels) {
+        int[] tokens = new int[pixels.length << 1];
+        for (int i = 0; i < pixels.length; i++) {
+            tokens[(i << 1) + 1] = pixels[i];
+        }
+        return tokens;
+    }
+
+    private static int @NotNull [] tokenize(int @NotNull [] pixels, int width) {
+        int length = pixels.length;
+        int[] tokens = new int[length << 1];
+        int[] head = new int[1 << HASH_BITS];
+        int[] chain = new int[length];
+        Arrays.fill(head, -1);
+
+        int count = 0;
+        int i = 0;
+        while (i < length) {
+            int bestLength = 0;
+            int bestDistance = 0;
+            if (i + MIN_MATCH <= length) {
+                int max = Math.min(MAX_MATCH, length - i);
+                // the pixel above is a cheap candidate the hash chain may not reach
+                if (i >= width) {
+                    bestLength = matchLength(pixels, i - width, i, max);
+                    bestDistance = width;
+                }
+                int candidate = head[hash(pixels, i)];
+                for (int tries = 0; candidate >= 0 && tries < MAX_CHAIN && i - candidate <= MAX_DISTANCE; tries++) {
+                    int matched = matchLength(pixels, candidate, i, max);
+                    if (matched > bestLength) {
+                        bestLength = matched;
+                        bestDistance = i - candidate;
+                        if (matched == max) {
+                            break;
+                        }
+                    }
+                    candidate = chain[candidate];
+                }
+            }
+
+            int advance;
+            if (bestLength >= MIN_MATCH) {
+                tokens[count << 1] = bestLength;
+                tokens[(count << 1) + 1] = distanceCode(bestDistance, width);
+                advance = bestLength;
+            } else {
+                tokens[(count << 1) + 1] = pixels[i];
+                advance = 1;
+            }
+            count++;
+
+            for (int end = i + advance; i < end; i++) {
+                if (i + 1 < length) {
+                    int hash = hash(pixels, i);
+                    chain[i] = head[hash];
+                    head[hash] = i;
+                }
+            }
+        }
+        return Arrays.copyOf(tokens, count << 1);
+    }
+
+    private static int hash(int @NotNull [] pixels, int i) {
+        return (pixels[i] * 0x9E3779B1 + pixels[i + 1] * 0x85EBCA6B) >>> (32 - HASH_BITS);
+    }
+
+    private static int matchLength(int @NotNull [] pixels, int from, int to, int max) {
+        int length = 0;
+        while (length < max && pixels[from + length] == pixels[to + length]) {
+            length++;
+        }
+        return length;
+    }
+
+    private static int distanceCode(int distance, int width) {
+        // the two most common offsets have short codes, everything else is offset by 120
+        if (distance == width) {
+            return 1;
+        }
+        if (distance == 1) {
+            return 2;
+        }
+        return distance + 120;
+    }
+
+    private static int prefix(int value) {
+        int d = value - 1;
+        if (d < 4) {
+            return d;
+        }
+        int highest = 31 - Integer.numberOfLeadingZeros(d);
+        int second = d >> (highest - 1) & 1;
+        return 2 * highest + second;
+    }
+
+    private static void writeExtraBits(@NotNull BitWriter out, int value) {
+        int d = value - 1;
+        if (d < 4) {
+            return;
+        }
+        int bits = 31 - Integer.numberOfLeadingZeros(d) - 1;
+        out.writeBits(d & ((1 << bits) - 1), bits);
+    }
+
+    private static @NotNull PrefixCode writeCode(@NotNull BitWriter out, int @NotNull [] histogram) {
+        int used = 0;
+        int[] symbols = new int[2];
+        for (int symbol = 0; symbol < histogram.length; symbol++) {
+            if (histogram[symbol] > 0) {
+                if (used < 2) {
+                    symbols[used] = symbol;
+                }
+                used++;
+            }
+        }
+
+        int[] lengths = new int[histogram.length];
+        if (used <= 2 && symbols[0] < NUM_LITERAL_CODES && symbols[1] < NUM_LITERAL_CODES) {
+            // simple code, a single symbol takes no bits at all
+            out.writeBits(1, 1);
+            out.writeBits(Math.max(used, 1) - 1, 1);
+            if (symbols[0] <= 1) {
+                out.writeBits(0, 1);
+                out.writeBits(symbols[0], 1);
+            } else {
+                out.writeBits(1, 1);
+                out.writeBits(symbols[0], 8);
+            }
+            if (used == 2) {
+                out.writeBits(symbols[1], 8);
+                lengths[symbols[0]] = 1;
+                lengths[symbols[1]] = 1;
+            }
+            return new PrefixCode(lengths);
+        }
+
+        if (used == 1) {
+            // a normal code needs at least two symbols
+            histogram = histogram.clone();
+            histogram[symbols[0] == 0 ? 1 : 0] = 1;
+        }
+        lengths = codeLengths(histogram, 15);
+
+        // run length encode the code lengths
+        int[] tokens = new int[lengths.length * 2];
+        int count = 0;
+        for (int i = 0; i < lengths.length; ) {
+            int value = lengths[i];
+            int run = 1;
+            while (i + run < lengths.length && lengths[i + run] == value) {
+                run++;
+            }
+            i += run;
+            if (value == 0) {
+                while (run >= 3) {
+                    int repeat = Math.min(run, 138);
+                    if (repeat >= 11) {
+                        tokens[count++] = 18;
+                        tokens[count++] = repeat - 11;
+                    } else {
+                        tokens[count++] = 17;
+                        tokens[count++] = repeat - 3;
+                    }
+                    run -= repeat;
+                }
+            } else {
+                tokens[count++] = value;
+                tokens[count++] = 0;
+                run--;
+                while (run >= 3) {
+                    int repeat = Math.min(run, 6);
+                    tokens[count++] = 16;
+                    tokens[count++] = repeat - 3;
+                    run -= repeat;
+                }
+            }
+            while (run-- > 0) {
+                tokens[count++] = value;
+                tokens[count++] = 0;
+            }
+        }
+
+        int[] histogramOfLengths = new int[CODE_LENGTH_ORDER.length];
+        for (int t = 0; t < count; t += 2) {
+            histogramOfLengths[tokens[t]]++;
+        }
+        int distinct = 0;
+        for (int frequency : histogramOfLengths) {
+            if (frequency > 0) {
+                distinct++;
+            }
+        }
+        if (distinct < 2) {
+            histogramOfLengths[tokens[0] == 0 ? 1 : 0] = 1;
+        }
+        int[] codeLengthLengths = codeLengths(histogramOfLengths, 7);
+        PrefixCode codeLengthCode = new PrefixCode(codeLengthLengths);
+
+        int last = CODE_LENGTH_ORDER.length;
+        while (last > 4 && codeLengthLengths[CODE_LENGTH_ORDER[last - 1]] == 0) {
+            last--;
+        }
+        out.writeBits(0, 1);
+        out.writeBits(last - 4, 4);
+        for (int i = 0; i < last; i++) {
+            out.writeBits(codeLengthLengths[CODE_LENGTH_ORDER[i]], 3);
+        }
+        // code lengths for the whole alphabet follow
+        out.writeBits(0, 1);
+        for (int t = 0; t < count; t += 2) {
+            int token = tokens[t];
+            codeLengthCode.write(out, token);
+            if (token == 16) {
+                out.writeBits(tokens[t + 1], 2);
+            } else if (token == 17) {
+                out.writeBits(tokens[t + 1], 3);
+            } else if (token == 18) {
+                out.writeBits(tokens[t + 1], 7);
+            }
+        }
+        return new PrefixCode(lengths);
+    }
+
+    private static int @NotNull [] codeLengths(int @NotNull [] histogram, int limit) {
+        int[] counts = histogram.clone();
+        while (true) {
+            int[] lengths = huffman(counts);
+            int max = 0;
+            for (int length : lengths) {
+                max = Math.max(max, length);
+            }
+            if (max <= limit) {
+                return lengths;
+            }
+            // flatten the distribution until the tree is shallow enough
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    counts[i] = (counts[i] >> 1) | 1;
+                }
+            }
+        }
+    }
+
+    private static int @NotNull [] huffman(int @NotNull [] counts) {
+        int symbols = counts.length;
+        int[] weights = new int[symbols * 2];
+        int[] parents = new int[symbols * 2];
+        PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) -> weights[a] != weights[b] ? Integer.compare(weights[a], weights[b]) : Integer.compare(a, b));
+        for (int i = 0; i < symbols; i++) {
+            if (counts[i] > 0) {
+                weights[i] = counts[i];
+                queue.add(i);
+            }
+        }
+        int next = symbols;
+        while (queue.size() > 1) {
+            int a = queue.poll();
+            int b = queue.poll();
+            weights[next] = weights[a] + weights[b];
+            parents[a] = next;
+            parents[b] = next;
+            queue.add(next++);
+        }
+        int root = next - 1;
+        int[] lengths = new int[symbols];
+        for (int i = 0; i < symbols; i++) {
+            if (counts[i] > 0) {
+                int length = 0;
+                for (int node = i; node != root; node = parents[node]) {
+                    length++;
+                }
+                lengths[i] = length;
+            }
+        }
+        return lengths;
+    }
+
+    private static final class PrefixCode {
+        private final int[] codes;
+        private final int[] lengths;
+
+        private PrefixCode(int @NotNull [] lengths) {
+            this.lengths = lengths;
+            this.codes = new int[lengths.length];
+
+            // canonical codes, stored bit reversed since the stream is read least significant bit first
+            int[] lengthCounts = new int[16];
+            for (int length : lengths) {
+                lengthCounts[length]++;
+            }
+            lengthCounts[0] = 0;
+            int[] nextCode = new int[16];
+            int code = 0;
+            for (int length = 1; length < 16; length++) {
+                code = (code + lengthCounts[length - 1]) << 1;
+                nextCode[length] = code;
+            }
+            for (int symbol = 0; symbol < lengths.length; symbol++) {
+                int length = lengths[symbol];
+                if (length > 0) {
+                    this.codes[symbol] = Integer.reverse(nextCode[length]++) >>> (32 - length);
+                }
+            }
+        }
+
+        private void write(@NotNull BitWriter out, int symbol) {
+            out.writeBits(this.codes[symbol], this.lengths[symbol]);
+        }
+    }
+
+    private static final class BitWriter {
+        private byte[] bytes = new byte[1 << 16];
+        private int size;
+        private long bits;
+        private int used;
+
+        private void reset() {
+            this.size = 0;
+            this.bits = 0;
+            this.used = 0;
+        }
+
+        private void writeBits(int value, int count) {
+            if (count == 0) {
+                return;
+            }
+            this.bits |= (value & ((1L << count) - 1)) << this.used;
+            this.used += count;
+            while (this.used >= 8) {
+                if (this.size == this.bytes.length) {
+                    this.bytes = Arrays.copyOf(this.bytes, this.bytes.length << 1);
+                }
+                this.bytes[this.size++] = (byte) this.bits;
+                this.bits >>>= 8;
+                this.used -= 8;
+            }
+        }
+
+        private byte @NotNull [] finish() {
+            if (this.used > 0) {
+                writeBits(0, 8 - this.used);
+            }
+            return this.bytes;
+        }
+
+        private int size() {
+            return this.size;
+        }
+    }
+}
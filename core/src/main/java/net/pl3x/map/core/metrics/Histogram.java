@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with power of two buckets from 1µs up to about 16s.
+ * <p>
+ * Recording only bumps two counters, so it is cheap enough for per chunk timings
+ * from all render threads at once.
+ */
+public class Histogram {
+    /**
+     * Upper bound of the largest finite bucket, as a power of two in microseconds.
+     */
+    public static final int MAX_BUCKET = 24;
+
+    private final LongAdder[] buckets = new LongAdder[MAX_BUCKET + 2]; // last one is +Inf
+    private final LongAdder sum = new LongAdder();
+
+    public Histogram() {
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record a single duration.
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0L) {
+            return;
+        }
+        long micros = nanos / 1000L;
+        // smallest power of two at or above the duration
+        int bucket = micros <= 1L ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1L);
+        this.buckets[Math.min(bucket, MAX_BUCKET + 1)].increment();
+        this.sum.add(nanos);
+    }
+
+    /**
+     * Get the upper bound of a bucket.
+     *
+     * @param bucket bucket index
+     * @return upper bound in seconds, or infinity for the last bucket
+     */
+    public static double getBound(int bucket) {
+        return bucket > MAX_BUCKET ? Double.POSITIVE_INFINITY : (1L << bucket) / 1_000_000.0D;
+    }
+
+    /**
+     * Get how many durations fell at or below each bucket's upper bound.
+     *
+     * @return cumulative bucket counts, the last one being the total count
+     */
+    public long[] getCumulativeCounts() {
+        long[] counts = new long[this.buckets.length];
+        long total = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = total += this.buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public long getCount() {
+        long count = 0L;
+        for (LongAdder bucket : this.buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Get the sum of all recorded durations.
+     *
+     * @return sum in nanoseconds
+     */
+    public long getSum() {
+        return this.sum.sum();
+    }
+
+    /**
+     * Get the average recorded duration.
+     *
+     * @return average in milliseconds
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0L ? 0.0D : getSum() / (count * 1_000_000.0D);
+    }
+
+    /**
+     * Get an estimate of a quantile. This is the upper bound of the bucket the quantile
+     * falls in, so it is off by up to a factor of two.
+     *
+     * @param quantile quantile between 0 and 1
+     * @return estimated quantile in milliseconds
+     */
+    public double getQuantile(double quantile) {
+        long[] counts = getCumulativeCounts();
+        long total = counts[counts.length - 1];
+        if (total == 0L) {
+            return 0.0D;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        for (int i = 0; i <= MAX_BUCKET; i++) {
+            if (counts[i] >= rank) {
+                return getBound(i) * 1000.0D;
+            }
+        }
+        return getBound(MAX_BUCKET) * 1000.0D;
+    }
+
+    public void reset() {
+        for (LongAdder bucket : this.buckets) {
+            bucket.reset();
+        }
+        this.sum.reset();
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.metrics;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import net.pl3x.map.core.Pl3xMap;
+import net.pl3x.map.core.renderer.progress.Progress;
+import net.pl3x.map.core.renderer.task.RegionProcessor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Internal render metrics, shown by {@code /map metrics} and served in the
+ * Prometheus text format by the internal web server.
+ */
+public class MetricRegistry {
+    private final Map<@NotNull Timer, @NotNull Map<@NotNull String, @NotNull Histogram>> histograms = new EnumMap<>(Timer.class);
+    private final Map<@NotNull String, @NotNull Gauge> gauges = new ConcurrentHashMap<>();
+
+    public MetricRegistry() {
+        for (Timer timer : Timer.values()) {
+            this.histograms.put(timer, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Record a duration for an unlabelled timer.
+     *
+     * @param timer timer to record to
+     * @param nanos duration in nanoseconds
+     */
+    public void record(@NotNull Timer timer, long nanos) {
+        getHistogram(timer, "").record(nanos);
+    }
+
+    /**
+     * Record a duration for a labelled timer.
+     *
+     * @param timer timer to record to
+     * @param label label value, such as the renderer key
+     * @param nanos duration in nanoseconds
+     */
+    public void record(@NotNull Timer timer, @NotNull String label, long nanos) {
+        getHistogram(timer, label).record(nanos);
+    }
+
+    public @NotNull Histogram getHistogram(@NotNull Timer timer, @NotNull String label) {
+        return this.histograms.get(timer).computeIfAbsent(label, k -> new Histogram());
+    }
+
+    /**
+     * Get all histograms of a timer, sorted by label.
+     *
+     * @param timer timer to get histograms of
+     * @return histograms by label, the empty label for unlabelled timers
+     */
+    public @NotNull Map<@NotNull String, @NotNull Histogram> getHistograms(@NotNull Timer timer) {
+        return new TreeMap<>(this.histograms.get(timer));
+    }
+
+    /**
+     * Register a gauge with a single value.
+     *
+     * @param name  metric name
+     * @param help  metric description
+     * @param value current value
+     */
+    public void registerGauge(@NotNull String name, @NotNull String help, @NotNull Supplier<@NotNull Number> value) {
+        this.gauges.put(name, new Gauge(help, null, () -> Map.of("", value.get())));
+    }
+
+    /**
+     * Register a gauge with a value per label.
+     *
+     * @param name   metric name
+     * @param help   metric description
+     * @param label  label name
+     * @param values current values by label value
+     */
+    public void registerGauge(@NotNull String name, @NotNull String help, @NotNull String label, @NotNull Supplier<@NotNull Map<@NotNull String, ? extends @NotNull Number>> values) {
+        this.gauges.put(name, new Gauge(help, label, values));
+    }
+
+    public void registerDefaults() {
+        Pl3xMap api = Pl3xMap.api();
+        RegionProcessor processor = api.getRegionProcessor();
+
+        registerGauge("pl3xmap_executor_utilization", "Share of a pool's threads that are busy", "pool", () -> {
+            Map<String, Double> values = new LinkedHashMap<>();
+            values.put("render", getUtilization(api.getRenderExecutor()));
+            values.put("io", getUtilization(api.getIOExecutor()));
+            return values;
+        });
+        registerGauge("pl3xmap_executor_queued_tasks", "Tasks waiting for a pool thread", "pool", () -> {
+            Map<String, Long> values = new LinkedHashMap<>();
+            values.put("render", getQueuedTasks(api.getRenderExecutor()));
+            values.put("io", getQueuedTasks(api.getIOExecutor()));
+            return values;
+        });
+        registerGauge("pl3xmap_render_queue_depth", "Regions waiting to be rendered", "world", () -> {
+            Map<String, Integer> values = new TreeMap<>();
+            processor.getQueueSizes().forEach((world, size) -> values.put(world.getName(), size));
+            return values;
+        });
+        registerGauge("pl3xmap_render_regions", "Regions in each render stage", "stage", () -> {
+            Map<String, Integer> values = new LinkedHashMap<>();
+            for (Progress.Stage stage : Progress.Stage.values()) {
+                values.put(stage.name().toLowerCase(), processor.getRegionsInStage(stage));
+            }
+            return values;
+        });
+        registerGauge("pl3xmap_render_budget", "Regions allowed in flight by the throttle", processor::getInFlightLimit);
+        registerGauge("pl3xmap_server_mspt", "Average server tick time in milliseconds", api::getAverageTickTime);
+    }
+
+    public void reset() {
+        this.histograms.values().forEach(Map::clear);
+    }
+
+    /**
+     * Write all metrics in the Prometheus text exposition format.
+     *
+     * @return metrics as text
+     */
+    public @NotNull String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        for (Timer timer : Timer.values()) {
+            Map<String, Histogram> histograms = getHistograms(timer);
+            if (histograms.isEmpty()) {
+                continue;
+            }
+            String name = timer.getName();
+            sb.append("# HELP ").append(name).append(' ').append(timer.getHelp()).append('\n');
+            sb.append("# TYPE ").append(name).append(" histogram\n");
+            histograms.forEach((label, histogram) -> {
+                String labels = timer.getLabel() == null ? "" : timer.getLabel() + "=\"" + escape(label) + "\",";
+                long[] counts = histogram.getCumulativeCounts();
+                for (int i = 0; i < counts.length; i++) {
+                    double bound = Histogram.getBound(i);
+                    sb.append(name).append("_bucket{").append(labels).append("le=\"")
+                            .append(Double.isInfinite(bound) ? "+Inf" : Double.toString(bound))
+                            .append("\"} ").append(counts[i]).append('\n');
+                }
+                String suffix = labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+                sb.append(name).append("_sum").append(suffix).append(' ').append(histogram.getSum() / 1_000_000_000.0D).append('\n');
+                sb.append(name).append("_count").append(suffix).append(' ').append(counts[counts.length - 1]).append('\n');
+            });
+        }
+        new TreeMap<>(this.gauges).forEach((name, gauge) -> {
+            Map<String, ? extends Number> values;
+            try {
+                values = gauge.values().get();
+            } catch (Throwable t) {
+                // not available right now, such as the pools while reloading
+                return;
+            }
+            sb.append("# HELP ").append(name).append(' ').append(gauge.help()).append('\n');
+            sb.append("# TYPE ").append(name).append(" gauge\n");
+            values.forEach((label, value) -> {
+                sb.append(name);
+                if (gauge.label() != null) {
+                    sb.append('{').append(gauge.label()).append("=\"").append(escape(label)).append("\"}");
+                }
+                sb.append(' ').append(value.doubleValue()).append('\n');
+            });
+        });
+        return sb.toString();
+    }
+
+    private static double getUtilization(@Nullable ExecutorService executor) {
+        return getActiveThreads(executor) / (double) getThreads(executor);
+    }
+
+    public static int getActiveThreads(@Nullable ExecutorService executor) {
+        return executor instanceof ForkJoinPool pool ? pool.getActiveThreadCount() : 0;
+    }
+
+    public static int getThreads(@Nullable ExecutorService executor) {
+        return executor instanceof ForkJoinPool pool ? pool.getParallelism() : 1;
+    }
+
+    public static long getQueuedTasks(@Nullable ExecutorService executor) {
+        return executor instanceof ForkJoinPool pool ? pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount() : 0L;
+    }
+
+    private static @NotNull String escape(@NotNull String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private record Gauge(@NotNull String help, @Nullable String label,
+                         @NotNull Supplier<@NotNull Map<@NotNull String, ? extends @NotNull Number>> values) {
+    }
+
+    /**
+     * Timed steps of the render hot path.
+     */
+    public enum Timer {
+        REGION_READ("region_read", "Time to map and prefetch a region file", null),
+        CHUNK_DECODE("chunk_decode", "Time to decompress and parse the nbt of a chunk", null),
+        CHUNK_POPULATE("chunk_populate", "Time to read the blocks, biomes and heightmaps of a chunk", null),
+        RENDERER_SCAN("renderer_scan", "Time a renderer spends scanning a region, all renderers together when they share a single pass", "renderer"),
+        TILE_ENCODE("tile_encode", "Time to encode a tile image", null),
+        TILE_WRITE("tile_write", "Time to write an encoded tile to disk", null);
+
+        private final String name;
+        private final String help;
+        private final String label;
+
+        Timer(@NotNull String name, @NotNull String help, @Nullable String label) {
+            this.name = "pl3xmap_" + name + "_seconds";
+            this.help = help;
+            this.label = label;
+        }
+
+        public @NotNull String getName() {
+            return this.name;
+        }
+
+        public @NotNull String getHelp() {
+            return this.help;
+        }
+
+        public @Nullable String getLabel() {
+            return this.label;
+        }
+    }
+}
@@ -33,7 +33,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.UUID;
 import javax.imageio.ImageIO;
-import net.pl3x.map.core.util.Colors;
+import net.pl3x.map.core.util.ColorMath;
 import net.pl3x.map.core.util.FileUtil;
 import org.jetbrains.annotations.NotNull;
 
@@ -135,16 +135,13 @@ public class PlayerTexture extends Thread {
     }
 
     private static @NotNull BufferedImage getPart(@NotNull BufferedImage source, int x, int y) {
-        BufferedImage head = source.getSubimage(x, y, 8, 8);
-        BufferedImage helm = source.getSubimage(x + 32, y, 8, 8);
+        int[] head = source.getRGB(x, y, 8, 8, null, 0, 8);
+        int[] helm = source.getRGB(x + 32, y, 8, 8, null, 0, 8);
+        ColorMath.blend(helm, 0, head, 0, head, 0, head.length);
         BufferedImage result = new BufferedImage(32, 32, source.getType());
         for (int x1 = 0; x1 < 32; x1++) {
             for (int z1 = 0; z1 < 32; z1++) {
-                int argb = Colors.blend(
-                        helm.getRGB(x1 / 4, z1 / 4),
-                        head.getRGB(x1 / 4, z1 / 4)
-                );
-                result.setRGB(x1, z1, argb);
+                result.setRGB(x1, z1, head[(z1 / 4) * 8 + x1 / 4]);
             }
         }
         return result;
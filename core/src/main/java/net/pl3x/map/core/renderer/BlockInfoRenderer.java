@@ -31,6 +31,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import net.pl3x.map.core.Pl3xMap;
 import net.pl3x.map.core.image.TileImage;
 import net.pl3x.map.core.markers.Point;
 import net.pl3x.map.core.renderer.task.RegionScanTask;
@@ -68,7 +69,12 @@ public class BlockInfoRenderer extends Renderer {
     }
 
     @Override
-    public void saveData(@NotNull Point region) {
+    public void skipData(@NotNull Point region) {
+        // block info tiles are written straight to disk, nothing waits for them
+    }
+
+    @Override
+    public boolean saveData(@NotNull Point region) {
         Path tilesDir = getWorld().getTilesDirectory();
         for (int zoom = 0; zoom <= getWorld().getConfig().ZOOM_MAX_OUT; zoom++) {
             Path dirPath = tilesDir.resolve(String.format(TileImage.DIR_PATH, zoom, getKey()));
@@ -139,18 +145,19 @@ public class BlockInfoRenderer extends Renderer {
             if (error != null) {
                 throw new RuntimeException(error);
             }
+
+            Pl3xMap.api().getRegionProcessor().getProgress(getWorld()).addBytesWritten(filePath);
         }
+        return true;
     }
 
     @Override
-    public void scanData(@NotNull Region region) {
+    public void preScanData(@NotNull Region region) {
         this.byteBuffer.clear();
 
         this.byteBuffer.put(0, ByteUtil.toBytes(0x706C3378)); // pl3x
         this.byteBuffer.put(4, ByteUtil.toBytes(0x6D617001)); // map1
         this.byteBuffer.put(8, ByteUtil.toBytes(getWorld().getMinBuildHeight()));
-
-        super.scanData(region);
     }
 
     @Override
@@ -80,17 +80,41 @@ public abstract class Renderer extends Keyed {
     }
 
     public void allocateData(@NotNull Point region) {
-        this.tileImage = new TileImage(getKey(), getWorld(), region);
+        this.tileImage = new TileImage(getKey(), getWorld(), region, getRegionScanTask().getModifiedChunks());
     }
 
-    public void saveData(@NotNull Point region) {
-        this.tileImage.saveToDisk();
+    /**
+     * Save the rendered region to disk.
+     *
+     * @param region region to save
+     * @return false if the region could not be saved
+     */
+    public boolean saveData(@NotNull Point region) {
+        return this.tileImage.saveToDisk();
+    }
+
+    /**
+     * Called instead of {@link #saveData(Point)} when the region will not be saved,
+     * so its zoomed out tiles do not wait for it.
+     *
+     * @param region region that was skipped
+     */
+    public void skipData(@NotNull Point region) {
+        TileImage.skip(getKey(), getWorld(), region);
+    }
+
+    public void preScanData(@NotNull Region region) {
     }
 
     public void scanData(@NotNull Region region) {
+        preScanData(region);
+
         int cX = region.getX() << 5;
         int cZ = region.getZ() << 5;
 
+        // one view for every column of this region
+        Chunk.BlockData view = new Chunk.BlockData();
+
         // iterate each chunk in this region
         for (int chunkX = cX; chunkX < cX + 32; chunkX++) {
             int bX = chunkX << 4;
@@ -99,17 +123,21 @@ public abstract class Renderer extends Keyed {
                 if (!getWorld().visibleChunk(chunkX, chunkZ)) {
                     continue;
                 }
+                // skip chunks that did not change since the last render
+                if (!getRegionScanTask().isChunkModified(chunkX, chunkZ)) {
+                    continue;
+                }
+                Pl3xMap.api().getRegionProcessor().checkPaused();
                 int bZ = chunkZ << 4;
                 Chunk chunk = region.getChunk(chunkX, chunkZ);
                 // iterate each block in this chunk
                 for (int blockX = bX; blockX < bX + 16; blockX++) {
                     for (int blockZ = bZ; blockZ < bZ + 16; blockZ++) {
-                        Pl3xMap.api().getRegionProcessor().checkPaused();
                         // skip any blocks that do not need to be rendered due to visibility limits
                         if (!getWorld().visibleBlock(blockX, blockZ)) {
                             continue;
                         }
-                        Chunk.BlockData data = chunk.getData(blockX, blockZ);
+                        Chunk.BlockData data = chunk.getData(blockX, blockZ, view);
                         if (data == null) {
                             // this shouldn't happen, but just in case...
                             continue;
@@ -119,6 +147,11 @@ public abstract class Renderer extends Keyed {
                 }
             }
         }
+
+        postScanData(region);
+    }
+
+    public void postScanData(@NotNull Region region) {
     }
 
     public abstract void scanBlock(@NotNull Region region, @NotNull Chunk chunk, Chunk.@NotNull BlockData data, int blockX, int blockZ);
@@ -156,8 +189,8 @@ public abstract class Renderer extends Keyed {
         }
 
         // if there was translucent glass, mix it in here
-        for (int color : data.getGlassColors()) {
-            pixelColor = Colors.blend(color, pixelColor);
+        for (int i = 0, count = data.getGlassCount(); i < count; i++) {
+            pixelColor = Colors.blend(data.getGlassColor(i), pixelColor);
         }
 
         return pixelColor;
@@ -23,7 +23,9 @@
  */
 package net.pl3x.map.core.renderer;
 
+import java.util.Arrays;
 import net.pl3x.map.core.Pl3xMap;
+import net.pl3x.map.core.markers.Point;
 import net.pl3x.map.core.renderer.heightmap.Heightmap;
 import net.pl3x.map.core.renderer.task.RegionScanTask;
 import net.pl3x.map.core.util.Colors;
@@ -34,8 +36,17 @@ import net.pl3x.map.core.world.Region;
 import org.jetbrains.annotations.NotNull;
 
 public class VanillaRenderer extends Renderer {
+    private static final int UNSCANNED = Integer.MIN_VALUE;
+    // chunk rows of a region are scanned on several threads, each reuses its own scratch column
+    private static final ThreadLocal<@NotNull Column> COLUMN = ThreadLocal.withInitial(Column::new);
+
     private final Heightmap heightmap;
 
+    // block heights of every scanned column in this region
+    private int[] heights;
+    // pixels that still need land shading after the scan, an array so rows can be scanned at the same time
+    private boolean[] land;
+
     public VanillaRenderer(@NotNull RegionScanTask task, @NotNull Builder builder) {
         super(task, builder);
         this.heightmap = Pl3xMap.api().getHeightmapRegistry().get("old_school");
@@ -47,90 +58,143 @@ public class VanillaRenderer extends Renderer {
     }
 
     @Override
-    public void scanData(@NotNull Region region) {
+    public void allocateData(@NotNull Point region) {
+        super.allocateData(region);
+        this.heights = new int[512 << 9];
+        this.land = new boolean[512 << 9];
+    }
+
+    @Override
+    public boolean saveData(@NotNull Point region) {
+        boolean saved = super.saveData(region);
+        this.heights = null;
+        this.land = null;
+        return saved;
+    }
+
+    @Override
+    public void preScanData(@NotNull Region region) {
+        Arrays.fill(this.heights, UNSCANNED);
+        Arrays.fill(this.land, false);
+    }
+
+    @Override
+    public void scanBlock(@NotNull Region region, @NotNull Chunk chunk, Chunk.@NotNull BlockData data, int blockX, int blockZ) {
+        Column column = scanColumn(chunk, blockX, blockZ);
+        int pixelX = blockX & 0x1FF;
+        int pixelZ = blockZ & 0x1FF;
+        int index = getTileImage().getIndex(pixelX, pixelZ);
+        this.heights[index] = column.blockY;
+
+        if (column.fluidstate == null) {
+            // land shading depends on the block north of us, store the color and shade after the scan
+            getTileImage().setPixel(blockX, blockZ, column.blockstate.getBlock().vanilla());
+            this.land[index] = true;
+            return;
+        }
+
+        int brightness;
+        double heightDiff = (double) (column.fluidY - column.blockY) * 0.1D + (double) (pixelX + pixelZ & 1) * 0.2D;
+        if (heightDiff < 0.5D) {
+            brightness = 0x00;
+        } else if (heightDiff > 0.9D) {
+            brightness = 0x44;
+        } else {
+            brightness = 0x22;
+        }
+        getTileImage().setPixel(blockX, blockZ, shade(brightness, column.fluidstate.getBlock().vanilla()));
+    }
+
+    @Override
+    public void postScanData(@NotNull Region region) {
         int startX = region.getX() << 9;
         int startZ = region.getZ() << 9;
-
         for (int pixelX = 0; pixelX < 512; pixelX++) {
-            int blockX = startX + pixelX;
             double lastBlockY = 0.0D;
-            for (int pixelZ = -1; pixelZ < 512; pixelZ++) {
-                int blockZ = startZ + pixelZ;
-
-                Pl3xMap.api().getRegionProcessor().checkPaused();
-
-                Chunk chunk = region.getWorld().getChunk(region, blockX >> 4, blockZ >> 4);
-                if (chunk instanceof EmptyChunk) {
+            for (int pixelZ = 0; pixelZ < 512; pixelZ++) {
+                int index = getTileImage().getIndex(pixelX, pixelZ);
+                int blockY = this.heights[index];
+                if (blockY == UNSCANNED) {
+                    // empty or invisible column, keep the last known height
                     continue;
                 }
-
-                int blockY = chunk.noHeightmap() ? getWorld().getMaxBuildHeight() : chunk.getWorldSurfaceY(blockX, blockZ) + 1;
-                int fluidY = 0;
-                BlockState blockstate;
-                BlockState fluidstate = null;
-
-                // if world has ceiling iterate down until we find air
-                if (getWorld().hasCeiling()) {
-                    blockY = getWorld().getLogicalHeight();
-                    do {
-                        blockY -= 1;
-                        blockstate = chunk.getBlockState(blockX, blockY, blockZ);
-                    } while (blockY > getWorld().getMinBuildHeight() && !blockstate.getBlock().isAir());
+                if (!this.land[index]) {
+                    // fluids are already shaded
+                    lastBlockY = blockY;
+                    continue;
                 }
-
-                // iterate down until we find a renderable block
-                do {
-                    blockY -= 1;
-                    blockstate = chunk.getBlockState(blockX, blockY, blockZ);
-                    if (blockstate.getBlock().isFluid()) {
-                        if (fluidstate == null) {
-                            // get fluid information for the top fluid block
-                            fluidY = blockY;
-                            fluidstate = blockstate;
-                        }
-                        continue;
+                if (pixelZ == 0 || this.heights[getTileImage().getIndex(pixelX, pixelZ - 1)] == UNSCANNED) {
+                    // the block north of us was not scanned, look it up
+                    int northY = scanHeight(region, startX + pixelX, startZ + pixelZ - 1);
+                    if (northY != UNSCANNED) {
+                        lastBlockY = northY;
                     }
+                }
+                int brightness;
+                double heightDiff = (blockY - lastBlockY) * 4.0D / (double) (1 + 4) + ((double) (pixelX + pixelZ & 1) - 0.5D) * 0.4D;
+                if (heightDiff > 0.6D) {
+                    brightness = 0x00;
+                } else if (heightDiff < -0.6D) {
+                    brightness = 0x44;
+                } else {
+                    brightness = 0x22;
+                }
+                getTileImage().setPixel(pixelX, pixelZ, shade(brightness, getTileImage().getPixel(pixelX, pixelZ)));
+                lastBlockY = blockY;
+            }
+        }
+    }
 
-                    // test if block is renderable. we ignore blocks with black color
-                    if (blockstate.getBlock().vanilla() > 0) {
-                        break;
-                    }
-                } while (blockY > getWorld().getMinBuildHeight());
-
-                if (pixelZ >= 0) {
-                    int color;
-                    int brightness;
-                    if (fluidstate != null) {
-                        color = fluidstate.getBlock().vanilla();
-                        double heightDiff = (double) (fluidY - blockY) * 0.1D + (double) (pixelX + pixelZ & 1) * 0.2D;
-                        if (heightDiff < 0.5D) {
-                            brightness = 0x00;
-                        } else if (heightDiff > 0.9D) {
-                            brightness = 0x44;
-                        } else {
-                            brightness = 0x22;
-                        }
-                    } else {
-                        color = blockstate.getBlock().vanilla();
-                        double heightDiff = (blockY - lastBlockY) * 4.0D / (double) (1 + 4) + ((double) (pixelX + pixelZ & 1) - 0.5D) * 0.4D;
-                        if (heightDiff > 0.6D) {
-                            brightness = 0x00;
-                        } else if (heightDiff < -0.6D) {
-                            brightness = 0x44;
-                        } else {
-                            brightness = 0x22;
-                        }
-                    }
+    private int scanHeight(@NotNull Region region, int blockX, int blockZ) {
+        Chunk chunk = region.getWorld().getChunk(region, blockX >> 4, blockZ >> 4);
+        return chunk instanceof EmptyChunk ? UNSCANNED : scanColumn(chunk, blockX, blockZ).blockY;
+    }
 
-                    getTileImage().setPixel(pixelX, pixelZ, Colors.blend(brightness << 24, Colors.setAlpha(0xFF, color)));
+    private int shade(int brightness, int color) {
+        return Colors.blend(brightness << 24, Colors.setAlpha(0xFF, color));
+    }
+
+    private @NotNull Column scanColumn(@NotNull Chunk chunk, int blockX, int blockZ) {
+        Column column = COLUMN.get();
+        column.fluidY = 0;
+        column.fluidstate = null;
+        column.blockY = chunk.noHeightmap() ? getWorld().getMaxBuildHeight() : chunk.getWorldSurfaceY(blockX, blockZ) + 1;
+
+        // if world has ceiling iterate down until we find air
+        if (getWorld().hasCeiling()) {
+            column.blockY = getWorld().getLogicalHeight();
+            do {
+                column.blockY = chunk.nextAirY(blockX, column.blockY - 1, blockZ);
+                column.blockstate = chunk.getBlockState(blockX, column.blockY, blockZ);
+            } while (column.blockY > getWorld().getMinBuildHeight() && !column.blockstate.getBlock().isAir());
+        }
+
+        // iterate down until we find a renderable block, skipping sections without any
+        do {
+            column.blockY = chunk.nextRenderableY(blockX, column.blockY - 1, blockZ);
+            column.blockstate = chunk.getBlockState(blockX, column.blockY, blockZ);
+            if (column.blockstate.getBlock().isFluid()) {
+                if (column.fluidstate == null) {
+                    // get fluid information for the top fluid block
+                    column.fluidY = column.blockY;
+                    column.fluidstate = column.blockstate;
                 }
+                continue;
+            }
 
-                lastBlockY = blockY;
+            // test if block is renderable. we ignore blocks with black color
+            if (column.blockstate.getBlock().vanilla() > 0) {
+                break;
             }
-        }
+        } while (column.blockY > getWorld().getMinBuildHeight());
+
+        return column;
     }
 
-    @Override
-    public void scanBlock(@NotNull Region region, @NotNull Chunk chunk, Chunk.@NotNull BlockData data, int blockX, int blockZ) {
+    private static class Column {
+        private int blockY;
+        private int fluidY;
+        private BlockState blockstate;
+        private BlockState fluidstate;
     }
 }
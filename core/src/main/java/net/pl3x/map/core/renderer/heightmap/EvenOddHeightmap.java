@@ -23,7 +23,6 @@
  */
 package net.pl3x.map.core.renderer.heightmap;
 
-import net.pl3x.map.core.world.Chunk;
 import net.pl3x.map.core.world.Region;
 import org.jetbrains.annotations.NotNull;
 
@@ -34,9 +33,9 @@ public class EvenOddHeightmap extends Heightmap {
 
     @Override
     public int getColor(@NotNull Region region, int blockX, int blockZ) {
-        Chunk.BlockData origin = region.getWorld().getChunk(region, blockX >> 4, blockZ >> 4).getData(blockX, blockZ);
+        int origin = getBlockY(region, blockX, blockZ);
         int heightColor = 0x22;
-        if (origin != null && origin.getBlockY() % 2 == 1) {
+        if (origin != UNSCANNED && origin % 2 == 1) {
             heightColor = 0x33;
         }
         return heightColor << 24;
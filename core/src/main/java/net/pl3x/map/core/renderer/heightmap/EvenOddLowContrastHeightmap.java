@@ -23,7 +23,6 @@
  */
 package net.pl3x.map.core.renderer.heightmap;
 
-import net.pl3x.map.core.world.Chunk;
 import net.pl3x.map.core.world.Region;
 import org.jetbrains.annotations.NotNull;
 
@@ -35,19 +34,18 @@ public class EvenOddLowContrastHeightmap extends Heightmap {
     @Override
     @SuppressWarnings("DuplicatedCode")
     public int getColor(@NotNull Region region, int blockX, int blockZ) {
-        Chunk.BlockData origin = region.getWorld().getChunk(region, blockX >> 4, blockZ >> 4).getData(blockX, blockZ);
-        Chunk.BlockData west = region.getWorld().getChunk(region, (blockX - 1) >> 4, blockZ >> 4).getData(blockX - 1, blockZ);
-        Chunk.BlockData north = region.getWorld().getChunk(region, blockX >> 4, (blockZ - 1) >> 4).getData(blockX, blockZ - 1);
+        int origin = getBlockY(region, blockX, blockZ);
+        int west = getBlockY(region, blockX - 1, blockZ);
+        int north = getBlockY(region, blockX, blockZ - 1);
         int heightColor = 0x22;
-        if (origin != null) {
-            int y = origin.getBlockY();
-            if (west != null) {
-                heightColor = getColor(y, west.getBlockY(), heightColor, 0x11);
+        if (origin != UNSCANNED) {
+            if (west != UNSCANNED) {
+                heightColor = getColor(origin, west, heightColor, 0x11);
             }
-            if (north != null) {
-                heightColor = getColor(y, north.getBlockY(), heightColor, 0x11);
+            if (north != UNSCANNED) {
+                heightColor = getColor(origin, north, heightColor, 0x11);
             }
-            if (y % 2 == 1) {
+            if (origin % 2 == 1) {
                 heightColor += 0x06;
             }
         }
@@ -23,7 +23,6 @@
  */
 package net.pl3x.map.core.renderer.heightmap;
 
-import net.pl3x.map.core.world.Chunk;
 import net.pl3x.map.core.world.Region;
 import org.jetbrains.annotations.NotNull;
 
@@ -35,15 +34,14 @@ public class EvenOddOldSchoolHeightmap extends Heightmap {
     @Override
     @SuppressWarnings("DuplicatedCode")
     public int getColor(@NotNull Region region, int blockX, int blockZ) {
-        Chunk.BlockData origin = region.getWorld().getChunk(region, blockX >> 4, blockZ >> 4).getData(blockX, blockZ);
-        Chunk.BlockData west = region.getWorld().getChunk(region, (blockX - 1) >> 4, blockZ >> 4).getData(blockX - 1, blockZ);
+        int origin = getBlockY(region, blockX, blockZ);
+        int west = getBlockY(region, blockX - 1, blockZ);
         int heightColor = 0x22;
-        if (origin != null) {
-            int y = origin.getBlockY();
-            if (west != null) {
-                heightColor = getColor(y, west.getBlockY(), heightColor, 0x22);
+        if (origin != UNSCANNED) {
+            if (west != UNSCANNED) {
+                heightColor = getColor(origin, west, heightColor, 0x22);
             }
-            if (y % 2 == 1) {
+            if (origin % 2 == 1) {
                 heightColor += 0x11;
             }
         }
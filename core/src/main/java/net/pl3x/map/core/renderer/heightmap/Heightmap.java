@@ -27,11 +27,17 @@ import java.util.Arrays;
 import java.util.Objects;
 import net.pl3x.map.core.Keyed;
 import net.pl3x.map.core.util.Mathf;
+import net.pl3x.map.core.world.Chunk;
 import net.pl3x.map.core.world.Region;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public abstract class Heightmap extends Keyed {
+    /**
+     * Height of a column that has not been scanned.
+     */
+    public static final int UNSCANNED = Integer.MIN_VALUE;
+
     public final int[] x = new int[16];
     public final int[] z = new int[16];
 
@@ -41,6 +47,19 @@ public abstract class Heightmap extends Keyed {
 
     public abstract int getColor(@NotNull Region region, int blockX, int blockZ);
 
+    /**
+     * Get the y of the top renderable block of a column.
+     *
+     * @param region region being rendered
+     * @param blockX block x coordinate
+     * @param blockZ block z coordinate
+     * @return block y, or {@link #UNSCANNED} if the column's chunk was not scanned
+     */
+    public int getBlockY(@NotNull Region region, int blockX, int blockZ) {
+        Chunk chunk = region.getWorld().getChunk(region, blockX >> 4, blockZ >> 4);
+        return chunk.isPopulated() ? chunk.getBlockY(blockX, blockZ) : UNSCANNED;
+    }
+
     public int getColor(int y1, int y2, int heightColor, int step) {
         if (y1 > y2) {
             heightColor -= step;
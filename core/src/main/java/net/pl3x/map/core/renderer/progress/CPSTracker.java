@@ -30,13 +30,29 @@ public class CPSTracker {
 
     private final long[] avg = new long[SAMPLE_SIZE];
     private int index = -1;
+    private int samples;
 
     public void add(long val) {
         this.index = (this.index + 1) % SAMPLE_SIZE;
         this.avg[this.index] = val;
+        this.samples = Math.min(SAMPLE_SIZE, this.samples + 1);
     }
 
     public double average() {
-        return Arrays.stream(this.avg).filter(i -> i != 0).average().orElse(0.0D);
+        if (this.samples == 0) {
+            return 0.0D;
+        }
+        // seconds without progress count too, otherwise a stalled render looks fast
+        long sum = 0;
+        for (int i = 0; i < this.samples; i++) {
+            sum += this.avg[i];
+        }
+        return (double) sum / this.samples;
+    }
+
+    public void clear() {
+        Arrays.fill(this.avg, 0L);
+        this.index = -1;
+        this.samples = 0;
     }
 }
@@ -23,42 +23,83 @@
  */
 package net.pl3x.map.core.renderer.progress;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import net.pl3x.map.core.Pl3xMap;
 import net.pl3x.map.core.configuration.Lang;
 import net.pl3x.map.core.world.World;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * Render progress of a world.
+ * <p>
+ * Counters are striped, so render threads can bump them without fighting over a cache line.
+ * A single shared ticker updates the rates and estimates of every world that is rendering once a second.
+ */
 public class Progress implements Runnable {
+    private static final Set<@NotNull Progress> ACTIVE = ConcurrentHashMap.newKeySet();
+
+    static {
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Pl3xMap-Progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> ACTIVE.forEach(Progress::run), 1L, 1L, TimeUnit.SECONDS);
+    }
+
     private final CPSTracker cpsTracker = new CPSTracker();
 
-    private final AtomicLong processedChunks = new AtomicLong(0);
-    private final AtomicLong processedRegions = new AtomicLong(0);
+    private final LongAdder processedChunks = new LongAdder();
+    private final LongAdder processedRegions = new LongAdder();
+    private final LongAdder scannedChunks = new LongAdder();
+    private final LongAdder scannedBlocks = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder[] stageTimes = new LongAdder[Stage.values().length];
+    private final LongAdder[] stageCounts = new LongAdder[Stage.values().length];
 
-    private World world;
+    private volatile World world;
 
     private long prevProcessedChunks = 0;
-    private long totalChunks;
-    private long totalRegions;
-    private float percent;
-    private double cps;
-    private String eta = Lang.PROGRESS_ETA_UNKNOWN;
+    private volatile long totalChunks;
+    private volatile long totalRegions;
+    private volatile float percent;
+    private volatile double cps;
+    private volatile String eta = Lang.PROGRESS_ETA_UNKNOWN;
 
     public Progress() {
-        // this should run forever and ever
-        Executors.newScheduledThreadPool(1).scheduleAtFixedRate(this, 1L, 1L, TimeUnit.SECONDS);
+        for (int i = 0; i < this.stageTimes.length; i++) {
+            this.stageTimes[i] = new LongAdder();
+            this.stageCounts[i] = new LongAdder();
+        }
     }
 
     public void finish() {
+        ACTIVE.remove(this);
         this.world = null;
         setTotalChunks(0);
         setProcessedChunks(0);
         setTotalRegions(0);
         setProcessedRegions(0);
-        this.prevProcessedChunks = 0;
+        this.scannedChunks.reset();
+        this.scannedBlocks.reset();
+        this.bytesRead.reset();
+        this.bytesWritten.reset();
+        for (int i = 0; i < this.stageTimes.length; i++) {
+            this.stageTimes[i].reset();
+            this.stageCounts[i].reset();
+        }
+        this.cpsTracker.clear();
         this.percent = 0.0F;
         this.cps = 0.0D;
         this.eta = Lang.PROGRESS_ETA_UNKNOWN;
@@ -70,6 +111,11 @@ public class Progress implements Runnable {
 
     public void setWorld(@Nullable World world) {
         this.world = world;
+        if (world != null) {
+            ACTIVE.add(this);
+        } else {
+            ACTIVE.remove(this);
+        }
     }
 
     public long getTotalChunks() {
@@ -88,9 +134,12 @@ public class Progress implements Runnable {
         this.totalRegions = totalRegions;
     }
 
+    /**
+     * Count a region as done.
+     */
     public void increment() {
-        this.processedRegions.set(this.processedRegions.get() + 1);
-        this.processedChunks.set(this.processedChunks.get() + 1024);
+        this.processedRegions.increment();
+        this.processedChunks.add(1024);
     }
 
     public float getPercent() {
@@ -105,21 +154,115 @@ public class Progress implements Runnable {
         return this.eta;
     }
 
+    public long getProcessedChunkCount() {
+        return this.processedChunks.sum();
+    }
+
+    /**
+     * Get the processed chunks.
+     *
+     * @return snapshot of the processed chunks, changes to it are not tracked
+     * @deprecated the counter is no longer an AtomicLong, use {@link #getProcessedChunkCount()} and {@link #setProcessedChunks(long)}
+     */
+    @Deprecated
     public @NotNull AtomicLong getProcessedChunks() {
-        return this.processedChunks;
+        return new AtomicLong(getProcessedChunkCount());
     }
 
     public void setProcessedChunks(long processedChunks) {
-        getProcessedChunks().set(processedChunks);
+        this.processedChunks.reset();
+        this.processedChunks.add(processedChunks);
         this.prevProcessedChunks = processedChunks;
     }
 
+    public long getProcessedRegionCount() {
+        return this.processedRegions.sum();
+    }
+
+    /**
+     * Get the processed regions.
+     *
+     * @return snapshot of the processed regions, changes to it are not tracked
+     * @deprecated the counter is no longer an AtomicLong, use {@link #getProcessedRegionCount()} and {@link #setProcessedRegions(long)}
+     */
+    @Deprecated
     public @NotNull AtomicLong getProcessedRegions() {
-        return this.processedRegions;
+        return new AtomicLong(getProcessedRegionCount());
     }
 
     public void setProcessedRegions(long processedRegions) {
-        getProcessedRegions().set(processedRegions);
+        this.processedRegions.reset();
+        this.processedRegions.add(processedRegions);
+    }
+
+    /**
+     * Count chunks and block columns that were actually scanned.
+     * Unchanged chunks skipped by incremental renders are not part of it.
+     *
+     * @param chunks chunks scanned
+     * @param blocks block columns scanned
+     */
+    public void addScanned(long chunks, long blocks) {
+        this.scannedChunks.add(chunks);
+        this.scannedBlocks.add(blocks);
+    }
+
+    public long getScannedChunks() {
+        return this.scannedChunks.sum();
+    }
+
+    public long getScannedBlocks() {
+        return this.scannedBlocks.sum();
+    }
+
+    public void addBytesRead(long bytes) {
+        this.bytesRead.add(bytes);
+    }
+
+    public long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    public void addBytesWritten(long bytes) {
+        this.bytesWritten.add(bytes);
+    }
+
+    /**
+     * Count the size of a file that was just written.
+     *
+     * @param path file that was written
+     */
+    public void addBytesWritten(@NotNull Path path) {
+        try {
+            addBytesWritten(Files.size(path));
+        } catch (IOException ignore) {
+        }
+    }
+
+    public long getBytesWritten() {
+        return this.bytesWritten.sum();
+    }
+
+    /**
+     * Count the time a region spent in a stage.
+     *
+     * @param stage stage the region went through
+     * @param nanos time spent, in nanoseconds
+     */
+    public void addStageTime(@NotNull Stage stage, long nanos) {
+        this.stageTimes[stage.ordinal()].add(nanos);
+        this.stageCounts[stage.ordinal()].increment();
+    }
+
+    /**
+     * Get the average time a region spent in a stage.
+     *
+     * @param stage stage to get the time of
+     * @return average time in milliseconds
+     */
+    public double getAverageStageTime(@NotNull Stage stage) {
+        long count = this.stageCounts[stage.ordinal()].sum();
+        return count == 0 ? 0.0D : this.stageTimes[stage.ordinal()].sum() / 1_000_000.0D / count;
     }
 
     @Override
@@ -136,13 +279,14 @@ public class Progress implements Runnable {
             return;
         }
 
-        long processedChunks = getProcessedChunks().get();
+        long processedChunks = getProcessedChunkCount();
+        long totalChunks = getTotalChunks();
         this.cpsTracker.add(processedChunks - this.prevProcessedChunks);
         this.prevProcessedChunks = processedChunks;
-        this.percent = ((float) processedChunks / (float) getTotalChunks()) * 100.0F;
+        this.percent = totalChunks > 0 ? ((float) processedChunks / (float) totalChunks) * 100.0F : 0.0F;
         this.cps = this.cpsTracker.average();
         if (this.cps > 0.0D) {
-            long timeLeft = (this.totalChunks - processedChunks) / (long) this.cps * 1000L;
+            long timeLeft = (long) (Math.max(0L, totalChunks - processedChunks) / this.cps * 1000.0D);
             this.eta = formatMilliseconds(timeLeft);
         } else {
             this.eta = Lang.PROGRESS_ETA_UNKNOWN;
@@ -161,4 +305,8 @@ public class Progress implements Runnable {
             return String.format("%ds", sec);
         }
     }
+
+    public enum Stage {
+        READ, SCAN, SAVE
+    }
 }
@@ -30,6 +30,7 @@ import java.util.HashSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import net.pl3x.map.core.Pl3xMap;
+import net.pl3x.map.core.configuration.Config;
 import net.pl3x.map.core.log.Logger;
 import net.pl3x.map.core.markers.Point;
 import net.pl3x.map.core.util.Mathf;
@@ -67,7 +68,7 @@ public class RegionDoubleChecker implements Runnable {
 
             // rinse and repeat
             this.future = null;
-            start(30000L);
+            start(Config.RENDER_REGION_SWEEP_INTERVAL * 1000L);
         }, this.executor);
     }
 
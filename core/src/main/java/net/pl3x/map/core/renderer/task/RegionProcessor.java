@@ -23,54 +23,85 @@
  */
 package net.pl3x.map.core.renderer.task;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 import net.pl3x.map.core.Pl3xMap;
 import net.pl3x.map.core.configuration.Config;
 import net.pl3x.map.core.log.Logger;
 import net.pl3x.map.core.markers.Point;
 import net.pl3x.map.core.renderer.progress.Progress;
 import net.pl3x.map.core.util.Mathf;
-import net.pl3x.map.core.util.SpiralIterator;
 import net.pl3x.map.core.world.World;
 import org.jetbrains.annotations.NotNull;
 
 public class RegionProcessor {
-    private final Map<@NotNull World, @NotNull Collection<@NotNull Point>> regionsToScan = new ConcurrentHashMap<>();
-    private final Deque<@NotNull Ticket> ticketsToScan = new ConcurrentLinkedDeque<>();
+    private final Map<@NotNull World, @NotNull RenderQueue> queues = new ConcurrentHashMap<>();
+    private final Map<@NotNull String, @NotNull Map<@NotNull Tile, @NotNull Long>> viewedTiles = new ConcurrentHashMap<>(); // <world, <tile, last requested>>
+    private final Map<@NotNull World, @NotNull Map<@NotNull Long, @NotNull Long>> dirtyChunks = new ConcurrentHashMap<>(); // <world, <chunk pos, marked>>
+
+    private final Map<@NotNull World, @NotNull Progress> progress = new ConcurrentHashMap<>();
+
+    private final RenderThrottle throttle = new RenderThrottle();
+    private final AtomicIntegerArray regionsInStage = new AtomicIntegerArray(Progress.Stage.values().length);
 
     private final Executor executor;
-    private final Progress progress;
 
     private CompletableFuture<@NotNull Void> future;
 
-    private boolean paused;
+    private final Lock pauseLock = new ReentrantLock();
+    private final Condition unpaused = this.pauseLock.newCondition();
+    private volatile boolean paused;
 
     private long timeStarted;
     private boolean running;
 
     public RegionProcessor() {
         this.executor = Pl3xMap.ThreadFactory.createService("Pl3xMap-Processor");
-        this.progress = new Progress();
     }
 
-    @SuppressWarnings("BusyWait")
+    /**
+     * Block the calling thread while the processor is paused,
+     * and slow it down while the server is lagging.
+     * <p>
+     * Cheap enough to call once per chunk. Returns early if the thread gets interrupted,
+     * keeping the interrupt flag set so the caller can bail out.
+     */
     public void checkPaused() {
-        while (isPaused()) {
-            try {
-                Thread.sleep(50);
-            } catch (InterruptedException ignore) {
+        if (!this.paused) {
+            this.throttle.pace();
+            return;
+        }
+        this.pauseLock.lock();
+        try {
+            while (this.paused) {
+                this.unpaused.await();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.pauseLock.unlock();
         }
     }
 
@@ -79,15 +110,69 @@ public class RegionProcessor {
     }
 
     public void setPaused(boolean paused) {
-        this.paused = paused;
+        this.pauseLock.lock();
+        try {
+            this.paused = paused;
+            if (!paused) {
+                this.unpaused.signalAll();
+            }
+        } finally {
+            this.pauseLock.unlock();
+        }
+    }
+
+    /**
+     * Get the render progress of a world.
+     *
+     * @param world world to get progress for
+     * @return progress of the world
+     */
+    public @NotNull Progress getProgress(@NotNull World world) {
+        return this.progress.computeIfAbsent(world, k -> new Progress());
     }
 
-    public @NotNull Progress getProgress() {
-        return this.progress;
+    /**
+     * Get the progress of every world that is currently being rendered.
+     *
+     * @return progress of active worlds
+     */
+    public @NotNull List<@NotNull Progress> getActiveProgress() {
+        List<Progress> active = new ArrayList<>();
+        for (Progress progress : this.progress.values()) {
+            if (progress.getWorld() != null) {
+                active.add(progress);
+            }
+        }
+        return active;
     }
 
     public Set<World> getQueuedWorlds() {
-        return this.regionsToScan.keySet();
+        Set<World> worlds = new LinkedHashSet<>(this.queues.keySet());
+        for (Progress progress : getActiveProgress()) {
+            worlds.remove(progress.getWorld());
+        }
+        return worlds;
+    }
+
+    /**
+     * Get how many regions are waiting to be rendered in each world.
+     *
+     * @return queue sizes by world
+     */
+    public @NotNull Map<@NotNull World, @NotNull Integer> getQueueSizes() {
+        Map<World, Integer> sizes = new LinkedHashMap<>();
+        this.queues.forEach((world, queue) -> sizes.put(world, queue.size()));
+        return sizes;
+    }
+
+    /**
+     * Get how many regions are currently in a render stage.
+     *
+     * @param stage render stage
+     * @return regions in the stage
+     */
+    public int getRegionsInStage(@NotNull Progress.Stage stage) {
+        return this.regionsInStage.get(stage.ordinal());
     }
 
     public void start(long delay) {
@@ -116,10 +201,102 @@ public class RegionProcessor {
     }
 
     public void addRegions(@NotNull World world, @NotNull Collection<@NotNull Point> regions) {
-        for (Point region : regions) {
-            Ticket ticket = new Ticket(world, region);
-            if (!this.ticketsToScan.contains(ticket)) {
-                this.ticketsToScan.add(ticket);
+        addRegions(world, regions, false);
+    }
+
+    /**
+     * Queue regions to be rendered.
+     *
+     * @param world   world the regions are in
+     * @param regions regions to render
+     * @param live    true if the regions changed since they were last rendered, which puts them ahead of a background render
+     */
+    public void addRegions(@NotNull World world, @NotNull Collection<@NotNull Point> regions, boolean live) {
+        // add under the map's lock, so finish can not drop the queue while we fill it
+        this.queues.compute(world, (k, queue) -> {
+            if (queue == null) {
+                queue = new RenderQueue(k);
+            }
+            for (Point region : regions) {
+                queue.add(region, live);
+            }
+            return queue;
+        });
+    }
+
+    /**
+     * Mark a tile as being looked at on the web map. Regions under it are rendered before others.
+     *
+     * @param world name of the world's tiles directory
+     * @param zoom  zoom level of the tile
+     * @param x     tile X coordinate
+     * @param z     tile Z coordinate
+     */
+    public void markTileViewed(@NotNull String world, int zoom, int x, int z) {
+        Map<Tile, Long> tiles = this.viewedTiles.computeIfAbsent(world, k -> new ConcurrentHashMap<>());
+        if (tiles.size() >= 4096) {
+            expireViewedTiles(tiles);
+            if (tiles.size() >= 4096) {
+                return;
+            }
+        }
+        tiles.put(new Tile(zoom, x, z), System.currentTimeMillis());
+    }
+
+    /**
+     * Get the tiles of a world recently looked at on the web map.
+     *
+     * @param world world to get viewed tiles for
+     * @return viewed tiles with the time they were last requested
+     */
+    public @NotNull Map<@NotNull Tile, @NotNull Long> getViewedTiles(@NotNull World world) {
+        Map<Tile, Long> tiles = this.viewedTiles.get(world.getTilesDirectory().getFileName().toString());
+        if (tiles == null) {
+            return Map.of();
+        }
+        expireViewedTiles(tiles);
+        return new HashMap<>(tiles);
+    }
+
+    private void expireViewedTiles(@NotNull Map<@NotNull Tile, @NotNull Long> tiles) {
+        long expired = System.currentTimeMillis() - Config.RENDER_PRIORITY_VIEWER_TIME * 1000L;
+        tiles.values().removeIf(time -> time < expired);
+    }
+
+    /**
+     * Mark a chunk as changed. Marking the same chunk again only pushes its render back.
+     *
+     * @param world  world the chunk is in
+     * @param chunkX chunk X coordinate
+     * @param chunkZ chunk Z coordinate
+     */
+    public void markChunkDirty(@NotNull World world, int chunkX, int chunkZ) {
+        this.dirtyChunks.computeIfAbsent(world, k -> new ConcurrentHashMap<>())
+                .put(Mathf.asLong(chunkX, chunkZ), System.currentTimeMillis());
+    }
+
+    private void queueDirtyChunks() {
+        // give the server some time to write the chunks to disk
+        long settled = System.currentTimeMillis() - Config.RENDER_LIVE_UPDATE_DELAY * 1000L;
+        Iterator<Map.Entry<World, Map<Long, Long>>> iter = this.dirtyChunks.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<World, Map<Long, Long>> entry = iter.next();
+            World world = entry.getKey();
+            if (Pl3xMap.api().getWorldRegistry().get(world.getName()) != world) {
+                // world was unloaded or reset
+                iter.remove();
+                continue;
+            }
+            Collection<Point> regions = new HashSet<>();
+            for (Map.Entry<Long, Long> chunk : entry.getValue().entrySet()) {
+                long pos = chunk.getKey();
+                if (chunk.getValue() <= settled && entry.getValue().remove(pos, chunk.getValue())) {
+                    regions.add(Point.of(Mathf.longToX(pos) >> 5, Mathf.longToZ(pos) >> 5));
+                }
+            }
+            if (!regions.isEmpty()) {
+                Logger.debug("[" + world.getName() + "] Queuing " + regions.size() + " regions with dirty chunks");
+                addRegions(world, regions, true);
             }
         }
     }
@@ -138,119 +315,288 @@ public class RegionProcessor {
         Logger.debug("Region processor started queuing at " + this.timeStarted);
 
         try {
-            while (!this.ticketsToScan.isEmpty()) {
-                Ticket ticket = this.ticketsToScan.poll();
-                Collection<Point> set = this.regionsToScan.getOrDefault(ticket.world, new HashSet<>());
-                set.add(ticket.region);
-                this.regionsToScan.put(ticket.world, set);
-            }
-
-            Iterator<Map.Entry<World, Collection<Point>>> iter = this.regionsToScan.entrySet().iterator();
-            while (iter.hasNext()) {
-                Map.Entry<World, Collection<Point>> entry = iter.next();
-                iter.remove();
-                World world = entry.getKey();
-                Collection<Point> regions = entry.getValue();
-                process(world, regions);
-
-            }
+            queueDirtyChunks();
+            process();
         } catch (Throwable t) {
             t.printStackTrace();
         }
 
+        for (Progress.Stage stage : Progress.Stage.values()) {
+            this.regionsInStage.set(stage.ordinal(), 0);
+        }
+
         this.running = false;
         Logger.debug("Region processor finished queuing at " + System.currentTimeMillis());
     }
 
-    private void process(@NotNull World world, @NotNull Collection<@NotNull Point> regionPositions) {
-        Logger.debug(world.getName() + " Region processor started processing at " + System.currentTimeMillis());
+    private void process() {
+        Map<World, Active> active = new LinkedHashMap<>();
+
+        // each region goes through three stages: reading the region file on the io threads, decoding
+        // and scanning its chunks on the render threads, and saving its tiles on the io threads again.
+        // regions are only handed to a stage when it has room, so the render threads always have the
+        // next region waiting in memory, and nothing piles up when the disk can not keep up
+        BlockingQueue<Job> events = new LinkedBlockingQueue<>();
+        Deque<Job> read = new ArrayDeque<>();
+        List<Job> done = new ArrayList<>();
+        int reading = 0;
+        int scanning = 0;
+        int saving = 0;
+        int maxSaving = getIOThreads() * 2;
+        long nextTick = System.currentTimeMillis() + 1000L;
+
+        while (true) {
+            // pick up worlds that got regions queued
+            Iterator<Map.Entry<World, RenderQueue>> iter = this.queues.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<World, RenderQueue> entry = iter.next();
+                World world = entry.getKey();
+                if (Pl3xMap.api().getWorldRegistry().get(world.getName()) != world) {
+                    // world was unloaded or reset
+                    iter.remove();
+                    this.progress.remove(world);
+                    continue;
+                }
+                if (!active.containsKey(world) && !entry.getValue().isEmpty()) {
+                    // start level with the others so a new world can not take over the render threads
+                    double pass = active.values().stream().mapToDouble(a -> a.pass).min().orElse(0.0D);
+                    active.put(world, begin(world, entry.getValue(), pass));
+                }
+            }
 
-        // find max radius for spiral iterator
-        int maxRadius = 0;
-        for (Point pos : regionPositions) {
-            maxRadius = Math.max(Math.max(maxRadius, Math.abs(pos.x())), Math.abs(pos.z()));
-        }
+            int limit = getInFlightLimit();
 
-        // create spiral iterator to order region scanning
-        Point spawn = world.getSpawn();
-        SpiralIterator spiralIterator = new SpiralIterator(spawn.x() >> 9, spawn.z() >> 9, maxRadius);
-
-        // order preserved map of regions with boolean to signify if it was already scanned
-        List<Point> orderedRegionsToScan = new ArrayList<>();
-
-        // iterate the spiral
-        int numberOfSkippedRegions = 0;
-        while (spiralIterator.hasNext()) {
-            // let us not get stuck in an endless loop
-            if (numberOfSkippedRegions > 1000000) {
-                Logger.debug("Failsafe triggered.");
-                // we scanned over a million non-existent regions straight
-                // quit the spiral and add the remaining regions to the end
-                orderedRegionsToScan.addAll(regionPositions);
+            // scan regions that are read, as long as the tiles can be saved
+            while (scanning < limit && saving < maxSaving && !read.isEmpty()) {
+                scanning++;
+                Job job = read.poll();
+                submit(job, Progress.Stage.SCAN, Pl3xMap.api().getRenderExecutor(), job.task::scan, events);
+            }
+
+            // read ahead as many regions as can be scanned at once, each world gets a share by its weight
+            while (reading + read.size() < limit) {
+                Active next = null;
+                for (Active world : active.values()) {
+                    if (!world.queue.isEmpty() && (next == null || world.pass < next.pass)) {
+                        next = world;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                Point pos = next.queue.poll();
+                if (pos == null) {
+                    continue;
+                }
+                next.pass += 1.0D / Math.max(1, next.world.getConfig().RENDER_WEIGHT);
+                next.inFlight++;
+                reading++;
+                // the task and its renderers only exist while the region is being rendered
+                Job job = new Job(next, pos, new RegionScanTask(next.world, pos));
+                submit(job, Progress.Stage.READ, Pl3xMap.api().getIOExecutor(), job.task::read, events);
+            }
+
+            // wrap up worlds with nothing left to render
+            Iterator<Active> activeIter = active.values().iterator();
+            while (activeIter.hasNext()) {
+                Active world = activeIter.next();
+                if (world.inFlight == 0 && world.queue.isEmpty()) {
+                    activeIter.remove();
+                    finish(world);
+                }
+            }
+            if (active.isEmpty()) {
+                // nothing running and nothing left to start
                 break;
             }
 
-            // get region from spiral and ensure a region file exists for it
-            Point regionPos = spiralIterator.next();
-            if (regionPositions.remove(regionPos)) {
-                // file exists, add region to scan
-                orderedRegionsToScan.add(regionPos);
-                numberOfSkippedRegions = 0;
-            } else {
-                numberOfSkippedRegions++;
+            this.regionsInStage.set(Progress.Stage.READ.ordinal(), reading + read.size());
+            this.regionsInStage.set(Progress.Stage.SCAN.ordinal(), scanning);
+            this.regionsInStage.set(Progress.Stage.SAVE.ordinal(), saving);
+
+            try {
+                Job event = events.poll(Math.max(0L, nextTick - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    done.add(event);
+                    events.drainTo(done);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // move finished stages along
+            for (Job job : done) {
+                switch (job.stage) {
+                    case READ -> {
+                        reading--;
+                        if (job.success) {
+                            read.add(job);
+                        } else {
+                            complete(job);
+                        }
+                    }
+                    case SCAN -> {
+                        scanning--;
+                        if (job.success) {
+                            saving++;
+                            submit(job, Progress.Stage.SAVE, Pl3xMap.api().getIOExecutor(), job.task::save, events);
+                        } else {
+                            complete(job);
+                        }
+                    }
+                    case SAVE -> {
+                        saving--;
+                        complete(job);
+                    }
+                }
             }
+            done.clear();
+
+            if (System.currentTimeMillis() >= nextTick) {
+                nextTick = System.currentTimeMillis() + 1000L;
+
+                // back off while the server is lagging
+                this.throttle.update(getMaxInFlight());
+
+                // take in new changes while rendering and move them where they belong
+                queueDirtyChunks();
+                for (Active world : active.values()) {
+                    List<Point> added = world.queue.takeAdded();
+                    if (!added.isEmpty()) {
+                        world.world.getTileCache().add(added);
+                    }
+                    world.queue.rescore();
+
+                    Progress progress = getProgress(world.world);
+                    progress.setTotalRegions(world.queue.getAccepted());
+                    progress.setTotalChunks(progress.getTotalRegions() * 1024L);
+                }
+            }
+        }
+    }
+
+    private void submit(@NotNull Job job, Progress.@NotNull Stage stage, @NotNull Executor executor, @NotNull BooleanSupplier work, @NotNull BlockingQueue<@NotNull Job> events) {
+        CompletableFuture.supplyAsync(work::getAsBoolean, executor)
+                .whenComplete((success, throwable) -> {
+                    if (throwable != null) {
+                        throwable.printStackTrace();
+                    }
+                    job.stage = stage;
+                    job.success = success != null && success;
+                    events.add(job);
+                });
+    }
+
+    private void complete(@NotNull Job job) {
+        job.active.inFlight--;
+
+        // set region modified time
+        job.active.world.getRegionModifiedState().set(Mathf.asLong(job.pos), job.started);
+
+        // run the garbage collector
+        if (Config.GC_WHEN_RUNNING) {
+            System.gc();
         }
+    }
+
+    private @NotNull Active begin(@NotNull World world, @NotNull RenderQueue queue, double pass) {
+        Logger.debug(world.getName() + " Region processor started processing at " + System.currentTimeMillis());
+
+        queue.resetAccepted();
+
+        Progress progress = getProgress(world);
+        progress.setWorld(world);
+        progress.setTotalRegions(queue.getAccepted());
+        progress.setTotalChunks(progress.getTotalRegions() * 1024L);
+
+        // zoomed out tiles are kept in memory until all their regions are rendered
+        world.getTileCache().begin(queue.takeAdded());
+        queue.rescore();
 
-        // create and send tasks to executor to run
-        schedule(world, orderedRegionsToScan);
+        return new Active(world, queue, pass);
+    }
+
+    private void finish(@NotNull Active active) {
+        World world = active.world;
+
+        // regions queued up after the last one was taken are picked up on the next pass
+        this.queues.computeIfPresent(world, (k, v) -> v.isEmpty() ? null : v);
+
+        // stop the progress tracker
+        getProgress(world).finish();
+
+        // free up some memory
+        world.cleanup();
+
+        // run the garbage collector
+        if (Config.GC_WHEN_FINISHED) {
+            System.gc();
+        }
 
         Logger.debug(world.getName() + " Region processor finished processing at " + System.currentTimeMillis());
     }
 
-    private void schedule(@NotNull World world, @NotNull List<@NotNull Point> orderedRegionsToScan) {
-        getProgress().setWorld(world);
-        getProgress().setTotalRegions(orderedRegionsToScan.size());
-        getProgress().setTotalChunks(getProgress().getTotalRegions() * 1024L);
-
-        CompletableFuture.allOf(orderedRegionsToScan.stream()
-                .map(pos -> CompletableFuture.runAsync(new RegionScanTask(world, pos), Pl3xMap.api().getRenderExecutor())
-                        .whenComplete((result, throwable) -> {
-                            if (throwable != null) {
-                                throwable.printStackTrace();
-                            }
-
-                            // set region modified time
-                            world.getRegionModifiedState().set(Mathf.asLong(pos), this.timeStarted);
-
-                            // run the garbage collector
-                            if (Config.GC_WHEN_RUNNING) {
-                                System.gc();
-                            }
-                        })
-                ).toArray(CompletableFuture[]::new)
-        ).whenComplete((result, throwable) -> {
-            if (throwable != null) {
-                throwable.printStackTrace();
-            }
+    public @NotNull RenderThrottle getThrottle() {
+        return this.throttle;
+    }
 
-            // stop the progress tracker
-            getProgress().finish();
+    /**
+     * Get the number of regions currently allowed to be scanned at the same time.
+     * This drops below {@link #getMaxInFlight()} while the server is lagging.
+     *
+     * @return in-flight region limit
+     */
+    public int getInFlightLimit() {
+        return this.throttle.getBudget(getMaxInFlight());
+    }
 
-            // free up some memory
-            world.cleanup();
+    /**
+     * Get the maximum number of regions being scanned at the same time.
+     *
+     * @return configured in-flight region limit
+     */
+    public int getMaxInFlight() {
+        if (Config.RENDER_REGIONS_IN_FLIGHT > 0) {
+            return Config.RENDER_REGIONS_IN_FLIGHT;
+        }
+        return Pl3xMap.api().getRenderExecutor() instanceof ForkJoinPool pool ? pool.getParallelism() : 1;
+    }
 
-            // run the garbage collector
-            if (Config.GC_WHEN_FINISHED) {
-                System.gc();
-            }
+    private int getIOThreads() {
+        return Pl3xMap.api().getIOExecutor() instanceof ForkJoinPool pool ? pool.getParallelism() : 1;
+    }
 
-            // consider task as no longer running
-            this.running = false;
+    public record Tile(int zoom, int x, int z) {
+    }
 
-            Logger.debug(world.getName() + " Region processor finished task at " + System.currentTimeMillis());
-        }).join();
+    // render state of a world while it is being processed, only touched by the processor thread
+    private static final class Active {
+        private final World world;
+        private final RenderQueue queue;
+        private double pass;
+        private int inFlight;
+
+        private Active(@NotNull World world, @NotNull RenderQueue queue, double pass) {
+            this.world = world;
+            this.queue = queue;
+            this.pass = pass;
+        }
     }
 
-    private record Ticket(@NotNull World world, @NotNull Point region) {
+    // a region moving through the stages, only touched by the stage currently running it
+    private static final class Job {
+        private final Active active;
+        private final Point pos;
+        private final RegionScanTask task;
+        private final long started = System.currentTimeMillis();
+        private Progress.Stage stage;
+        private boolean success;
+
+        private Job(@NotNull Active active, @NotNull Point pos, @NotNull RegionScanTask task) {
+            this.active = active;
+            this.pos = pos;
+            this.task = task;
+        }
     }
 }
@@ -25,15 +25,22 @@ package net.pl3x.map.core.renderer.task;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLongArray;
 import net.pl3x.map.core.Pl3xMap;
+import net.pl3x.map.core.configuration.Config;
 import net.pl3x.map.core.log.Logger;
 import net.pl3x.map.core.markers.Point;
+import net.pl3x.map.core.metrics.MetricRegistry;
 import net.pl3x.map.core.registry.RendererRegistry;
 import net.pl3x.map.core.renderer.Renderer;
+import net.pl3x.map.core.renderer.progress.Progress;
 import net.pl3x.map.core.util.Mathf;
+import net.pl3x.map.core.world.Chunk;
 import net.pl3x.map.core.world.Region;
 import net.pl3x.map.core.world.World;
 import org.jetbrains.annotations.NotNull;
@@ -45,6 +52,10 @@ public class RegionScanTask implements Runnable {
 
     private final Map<@NotNull String, @NotNull Renderer> renderers = new LinkedHashMap<>();
 
+    private int[] timestamps;
+    private BitSet modifiedChunks;
+    private Region region;
+
     public RegionScanTask(@NotNull World world, @NotNull Point regionPos) {
         this.world = world;
         this.regionPos = regionPos;
@@ -57,6 +68,12 @@ public class RegionScanTask implements Runnable {
             rendererBuilders.add(registry.get(RendererRegistry.BLOCKINFO));
         }
 
+        // basic renderer goes first, other renderers copy its pixels
+        Renderer.Builder basic = registry.get(RendererRegistry.BASIC);
+        if (basic != null && rendererBuilders.remove(basic)) {
+            rendererBuilders.add(0, basic);
+        }
+
         rendererBuilders.forEach(builder -> {
             Renderer renderer = registry.createRenderer(this, builder);
             this.renderers.put(renderer.getKey(), renderer);
@@ -71,29 +88,127 @@ public class RegionScanTask implements Runnable {
         return this.renderers.get(id);
     }
 
+    /**
+     * Get the chunks that are being re-rendered.
+     *
+     * @return modified chunk indices, or null if the whole region is rendered
+     */
+    public @Nullable BitSet getModifiedChunks() {
+        return this.modifiedChunks;
+    }
+
+    public boolean isChunkModified(int chunkX, int chunkZ) {
+        return this.modifiedChunks == null || this.modifiedChunks.get((chunkX & 0x1F) + ((chunkZ & 0x1F) << 5));
+    }
+
+    public @NotNull Progress getProgress() {
+        return Pl3xMap.api().getRegionProcessor().getProgress(this.world);
+    }
+
     public void cleanup() {
         this.renderers.clear();
     }
 
     @Override
     public void run() {
+        if (read() && scan()) {
+            save();
+        }
+    }
+
+    /**
+     * Read the region file into memory. Runs on the io threads.
+     *
+     * @return true if the region has chunks to render
+     */
+    public boolean read() {
+        long start = System.nanoTime();
+        Region region = null;
         try {
-            Logger.debug("[" + this.world.getName() + "] Scanning " + regionPos + " -- " + Thread.currentThread().getName());
+            Logger.debug("[" + this.world.getName() + "] Reading " + regionPos + " -- " + Thread.currentThread().getName());
 
             Pl3xMap.api().getRegionProcessor().checkPaused();
 
+            region = prepareRegion();
+            if (this.modifiedChunks != null && this.modifiedChunks.isEmpty()) {
+                // the region file was touched, but none of its chunks changed
+                Logger.debug("[" + this.world.getName() + "] No modified chunks in " + regionPos);
+                region.release();
+                skipImages();
+                getProgress().increment();
+                this.world.getRegionModifiedState().set(Mathf.asLong(this.regionPos), System.currentTimeMillis());
+                return false;
+            }
+
+            getProgress().addBytesRead(region.prefetch());
+            this.region = region;
+            return true;
+        } catch (Throwable t) {
+            t.printStackTrace();
+            if (region != null) {
+                region.release();
+            }
+            skipImages();
+            return false;
+        } finally {
+            long time = System.nanoTime() - start;
+            getProgress().addStageTime(Progress.Stage.READ, time);
+            Pl3xMap.api().getMetricRegistry().record(MetricRegistry.Timer.REGION_READ, time);
+        }
+    }
+
+    /**
+     * Decode the chunks of the region and scan them into the renderers' images.
+     * Runs on the render threads.
+     *
+     * @return true if the region was scanned
+     */
+    public boolean scan() {
+        long start = System.nanoTime();
+        try {
+            Logger.debug("[" + this.world.getName() + "] Scanning " + regionPos + " -- " + Thread.currentThread().getName());
+
             allocateImages();
 
             Pl3xMap.api().getRegionProcessor().checkPaused();
 
-            scanRegion(loadRegion());
+            loadRegion(this.region);
+
+            Pl3xMap.api().getRegionProcessor().checkPaused();
+
+            scanRegion(this.region);
+            return true;
+        } catch (Throwable t) {
+            t.printStackTrace();
+            skipImages();
+            return false;
+        } finally {
+            // chunks are loaded, do not hold the region file open while the tiles are saved
+            this.region.release();
+            getProgress().addStageTime(Progress.Stage.SCAN, System.nanoTime() - start);
+        }
+    }
 
+    /**
+     * Save the renderers' images to the tiles. Runs on the io threads.
+     * <p>
+     * Encoding stays with the writing, as zoomed out and partly patched tiles are read back from disk first.
+     *
+     * @return always true
+     */
+    public boolean save() {
+        long start = System.nanoTime();
+        try {
             Pl3xMap.api().getRegionProcessor().checkPaused();
 
             saveImages();
         } catch (Throwable t) {
             t.printStackTrace();
+        } finally {
+            this.region = null;
+            getProgress().addStageTime(Progress.Stage.SAVE, System.nanoTime() - start);
         }
+        return true;
     }
 
     private void allocateImages() {
@@ -103,30 +218,212 @@ public class RegionScanTask implements Runnable {
         }
     }
 
-    private @NotNull Region loadRegion() {
+    private @NotNull Region prepareRegion() {
         Region region = this.world.getRegion(null, this.regionPos.x(), this.regionPos.z());
+        // the region may still be cached from an earlier render, make sure we read the current file
+        region.reset();
         try {
-            region.loadChunks();
+            this.timestamps = region.getChunkTimestamps();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        if (Config.RENDER_INCREMENTAL_CHUNKS && this.timestamps != null) {
+            BitSet modified = this.world.getChunkModifiedState().getModifiedChunks(this.regionPos, this.timestamps);
+            this.modifiedChunks = modified == null ? null : withBorder(modified);
+        }
         return region;
     }
 
+    /**
+     * Grow a set of modified chunks by one chunk in every direction. Edge shading and biome
+     * blending of a chunk read its neighbours, so those have to be rendered again too.
+     *
+     * @param modified modified chunk indices
+     * @return modified chunk indices and their neighbours in this region
+     */
+    private static @NotNull BitSet withBorder(@NotNull BitSet modified) {
+        BitSet result = (BitSet) modified.clone();
+        for (int index = modified.nextSetBit(0); index >= 0; index = modified.nextSetBit(index + 1)) {
+            int chunkX = index & 0x1F;
+            int chunkZ = index >> 5;
+            for (int z = Math.max(0, chunkZ - 1); z <= Math.min(31, chunkZ + 1); z++) {
+                for (int x = Math.max(0, chunkX - 1); x <= Math.min(31, chunkX + 1); x++) {
+                    result.set(x + (z << 5));
+                }
+            }
+        }
+        return result;
+    }
+
+    private void loadRegion(@NotNull Region region) {
+        try {
+            region.loadChunks(this.modifiedChunks);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private void scanRegion(@NotNull Region region) {
-        for (Renderer renderer : this.renderers.values()) {
+        MetricRegistry metrics = Pl3xMap.api().getMetricRegistry();
+        if (Config.RENDER_SINGLE_PASS_SCAN) {
+            long start = System.nanoTime();
+            long[] timings = scanRegionSinglePass(region);
+            if (timings == null) {
+                // renderers share the columns, so only their total is known
+                metrics.record(MetricRegistry.Timer.RENDERER_SCAN, "all", System.nanoTime() - start);
+            } else {
+                int i = 0;
+                for (Renderer renderer : this.renderers.values()) {
+                    metrics.record(MetricRegistry.Timer.RENDERER_SCAN, renderer.getKey(), timings[i++]);
+                }
+            }
+        } else {
+            for (Renderer renderer : this.renderers.values()) {
+                Pl3xMap.api().getRegionProcessor().checkPaused();
+                long start = System.nanoTime();
+                renderer.scanData(region);
+                metrics.record(MetricRegistry.Timer.RENDERER_SCAN, renderer.getKey(), System.nanoTime() - start);
+            }
+        }
+        getProgress().increment();
+    }
+
+    /**
+     * Scan a region once, handing each block column to every renderer.
+     *
+     * @param region region to scan
+     * @return time spent in each renderer in nanoseconds, or null if renderer timings are disabled
+     */
+    private long @Nullable [] scanRegionSinglePass(@NotNull Region region) {
+        Renderer[] renderers = this.renderers.values().toArray(new Renderer[0]);
+        AtomicLongArray timings = Config.RENDER_RENDERER_TIMINGS ? new AtomicLongArray(renderers.length) : null;
+
+        for (int i = 0; i < renderers.length; i++) {
+            long start = System.nanoTime();
+            renderers[i].preScanData(region);
+            if (timings != null) {
+                timings.addAndGet(i, System.nanoTime() - start);
+            }
+        }
+
+        int cX = region.getX() << 5;
+        int cZ = region.getZ() << 5;
+
+        RegionProcessor processor = Pl3xMap.api().getRegionProcessor();
+        if (Config.RENDER_SPLIT_REGION_SCANS && ForkJoinTask.inForkJoinPool() && processor.getInFlightLimit() >= processor.getMaxInFlight()) {
+            // every row of chunks is its own task, so idle render threads can help out when only a few
+            // regions are rendering. rows write to their own pixels, so renderers never share a slice
+            List<ForkJoinTask<?>> rows = new ArrayList<>(32);
+            for (int chunkZ = cZ; chunkZ < cZ + 32; chunkZ++) {
+                int row = chunkZ;
+                rows.add(ForkJoinTask.adapt(() -> scanChunkRow(region, renderers, timings, cX, row)));
+            }
+            ForkJoinTask.invokeAll(rows);
+        } else {
+            for (int chunkZ = cZ; chunkZ < cZ + 32; chunkZ++) {
+                scanChunkRow(region, renderers, timings, cX, chunkZ);
+            }
+        }
+
+        for (int i = 0; i < renderers.length; i++) {
+            long start = System.nanoTime();
+            renderers[i].postScanData(region);
+            if (timings != null) {
+                timings.addAndGet(i, System.nanoTime() - start);
+            }
+        }
+
+        if (timings == null) {
+            return null;
+        }
+        long[] result = new long[renderers.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = timings.get(i);
+        }
+        return result;
+    }
+
+    private void scanChunkRow(@NotNull Region region, @NotNull Renderer @NotNull [] renderers, @Nullable AtomicLongArray timings, int cX, int chunkZ) {
+        long[] rowTimings = timings == null ? null : new long[renderers.length];
+        int chunks = 0;
+        int blocks = 0;
+        int bZ = chunkZ << 4;
+        // one view for every column of this row
+        Chunk.BlockData view = new Chunk.BlockData();
+        // iterate each chunk in this row
+        for (int chunkX = cX; chunkX < cX + 32; chunkX++) {
+            // skip any blocks that do not need to be rendered due to visibility limits
+            if (!this.world.visibleChunk(chunkX, chunkZ)) {
+                continue;
+            }
+            // skip chunks that did not change since the last render
+            if (!isChunkModified(chunkX, chunkZ)) {
+                continue;
+            }
             Pl3xMap.api().getRegionProcessor().checkPaused();
-            renderer.scanData(region);
+            int bX = chunkX << 4;
+            Chunk chunk = region.getChunk(chunkX, chunkZ);
+            chunks++;
+            // iterate each block in this chunk
+            for (int blockX = bX; blockX < bX + 16; blockX++) {
+                for (int blockZ = bZ; blockZ < bZ + 16; blockZ++) {
+                    // skip any blocks that do not need to be rendered due to visibility limits
+                    if (!this.world.visibleBlock(blockX, blockZ)) {
+                        continue;
+                    }
+                    Chunk.BlockData data = chunk.getData(blockX, blockZ, view);
+                    if (data == null) {
+                        // this shouldn't happen, but just in case...
+                        continue;
+                    }
+                    // hand the column to every renderer
+                    if (rowTimings == null) {
+                        for (Renderer renderer : renderers) {
+                            renderer.scanBlock(region, chunk, data, blockX, blockZ);
+                        }
+                    } else {
+                        long time = System.nanoTime();
+                        for (int i = 0; i < renderers.length; i++) {
+                            renderers[i].scanBlock(region, chunk, data, blockX, blockZ);
+                            long now = System.nanoTime();
+                            rowTimings[i] += now - time;
+                            time = now;
+                        }
+                    }
+                    blocks++;
+                }
+            }
+        }
+        getProgress().addScanned(chunks, blocks);
+        if (rowTimings != null) {
+            for (int i = 0; i < rowTimings.length; i++) {
+                timings.addAndGet(i, rowTimings[i]);
+            }
+        }
+    }
+
+    private void skipImages() {
+        // the region was counted in the tile cache's batch, but will never reach save()
+        for (Renderer renderer : this.renderers.values()) {
+            renderer.skipData(this.regionPos);
         }
-        Pl3xMap.api().getRegionProcessor().getProgress().increment();
     }
 
     private void saveImages() {
+        boolean saved = true;
         for (Renderer renderer : this.renderers.values()) {
             Pl3xMap.api().getRegionProcessor().checkPaused();
-            renderer.saveData(this.regionPos);
+            saved &= renderer.saveData(this.regionPos);
+        }
+        if (!saved) {
+            // leave the region as modified, so the next render tries again
+            return;
         }
         // set region modified time
         world.getRegionModifiedState().set(Mathf.asLong(this.regionPos), System.currentTimeMillis());
+        // remember which chunk versions these tiles show
+        if (this.timestamps != null) {
+            world.getChunkModifiedState().set(this.regionPos, this.timestamps);
+        }
     }
 }
@@ -0,0 +1,242 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.renderer.task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import net.pl3x.map.core.Pl3xMap;
+import net.pl3x.map.core.configuration.Config;
+import net.pl3x.map.core.markers.Point;
+import net.pl3x.map.core.util.Mathf;
+import net.pl3x.map.core.world.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Regions of a world waiting to be rendered, in the order they should show up on the map.
+ * <p>
+ * Regions near online players go first, then regions someone is looking at on the web map,
+ * then regions that changed since they were last rendered (longest waiting first), and finally
+ * everything else outward from spawn. Players move and viewers scroll while a large render
+ * drains, so the order is recalculated with {@link #rescore()} as it goes.
+ */
+public class RenderQueue {
+    private static final int TIER_PLAYER = 0;
+    private static final int TIER_VIEWER = 1;
+    private static final int TIER_LIVE = 2;
+    private static final int TIER_BACKGROUND = 3;
+
+    private final World world;
+
+    private final Map<@NotNull Long, @NotNull Ticket> tickets = new HashMap<>();
+    private final List<@NotNull Point> added = new ArrayList<>();
+
+    private PriorityQueue<@NotNull Ticket> queue = new PriorityQueue<>();
+    private Scorer scorer;
+    private long accepted;
+
+    public RenderQueue(@NotNull World world) {
+        this.world = world;
+        this.scorer = new Scorer(world, new int[0], Map.of());
+    }
+
+    /**
+     * Add a region to the queue.
+     * <p>
+     * A region already in the queue is not added again, but gets promoted if it is now a live update.
+     *
+     * @param region region to render
+     * @param live   true if the region is queued because something in it changed
+     * @return true if the region was not queued yet
+     */
+    public synchronized boolean add(@NotNull Point region, boolean live) {
+        long pos = Mathf.asLong(region);
+        Ticket ticket = this.tickets.get(pos);
+        if (ticket != null) {
+            if (live && !ticket.live) {
+                this.queue.remove(ticket);
+                ticket.live = true;
+                ticket.queued = System.currentTimeMillis();
+                this.scorer.score(ticket);
+                this.queue.add(ticket);
+            }
+            return false;
+        }
+        ticket = new Ticket(region, live, System.currentTimeMillis());
+        this.scorer.score(ticket);
+        this.tickets.put(pos, ticket);
+        this.queue.add(ticket);
+        this.added.add(region);
+        this.accepted++;
+        return true;
+    }
+
+    /**
+     * Take the region that should be rendered next.
+     *
+     * @return next region, or null if the queue is empty
+     */
+    public synchronized @Nullable Point poll() {
+        Ticket ticket = this.queue.poll();
+        if (ticket == null) {
+            return null;
+        }
+        this.tickets.remove(Mathf.asLong(ticket.region));
+        return ticket.region;
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.queue.isEmpty();
+    }
+
+    public synchronized int size() {
+        return this.queue.size();
+    }
+
+    /**
+     * Get the number of regions accepted into the queue since the last {@link #resetAccepted()}.
+     *
+     * @return number of accepted regions
+     */
+    public synchronized long getAccepted() {
+        return this.accepted;
+    }
+
+    public synchronized void resetAccepted() {
+        this.accepted = this.queue.size();
+    }
+
+    /**
+     * Take the regions added to the queue since the last call.
+     *
+     * @return newly added regions
+     */
+    public synchronized @NotNull List<@NotNull Point> takeAdded() {
+        List<Point> added = new ArrayList<>(this.added);
+        this.added.clear();
+        return added;
+    }
+
+    /**
+     * Recalculate the priority of every queued region from the current player
+     * positions and web map viewers.
+     */
+    public void rescore() {
+        // gather everything outside the lock, players are read from the platform
+        List<Point> players = new ArrayList<>();
+        this.world.getPlayers().forEach(player -> players.add(player.getPosition()));
+        int[] playerRegions = new int[players.size() * 2];
+        for (int i = 0; i < players.size(); i++) {
+            Point pos = players.get(i);
+            playerRegions[i * 2] = pos.x() >> 9;
+            playerRegions[i * 2 + 1] = pos.z() >> 9;
+        }
+        Scorer scorer = new Scorer(this.world, playerRegions, Pl3xMap.api().getRegionProcessor().getViewedTiles(this.world));
+
+        synchronized (this) {
+            this.scorer = scorer;
+            for (Ticket ticket : this.tickets.values()) {
+                scorer.score(ticket);
+            }
+            this.queue = new PriorityQueue<>(this.tickets.values());
+        }
+    }
+
+    private static class Ticket implements Comparable<@NotNull Ticket> {
+        private final Point region;
+        private boolean live;
+        private long queued;
+
+        private int tier;
+        private long order;
+
+        private Ticket(@NotNull Point region, boolean live, long queued) {
+            this.region = region;
+            this.live = live;
+            this.queued = queued;
+        }
+
+        @Override
+        public int compareTo(@NotNull Ticket other) {
+            int compare = Integer.compare(this.tier, other.tier);
+            return compare != 0 ? compare : Long.compare(this.order, other.order);
+        }
+    }
+
+    private record Scorer(int spawnX, int spawnZ, int maxZoom, int[] players, Map<RegionProcessor.@NotNull Tile, @NotNull Long> viewed) {
+        private Scorer(@NotNull World world, int[] players, @NotNull Map<RegionProcessor.@NotNull Tile, @NotNull Long> viewed) {
+            this(world.getSpawn().x() >> 9, world.getSpawn().z() >> 9, world.getConfig().ZOOM_MAX_OUT, players, viewed);
+        }
+
+        private void score(@NotNull Ticket ticket) {
+            int x = ticket.region.x();
+            int z = ticket.region.z();
+
+            // regions around players, closest first
+            int nearest = Integer.MAX_VALUE;
+            for (int i = 0; i < this.players.length; i += 2) {
+                nearest = Math.min(nearest, distance(x, z, this.players[i], this.players[i + 1]));
+            }
+            if (nearest <= Config.RENDER_PRIORITY_PLAYER_RADIUS) {
+                ticket.tier = TIER_PLAYER;
+                ticket.order = nearest;
+                return;
+            }
+
+            // regions on screen of a web map viewer, most recently viewed first
+            if (!this.viewed.isEmpty()) {
+                long lastViewed = 0;
+                for (int zoom = 0; zoom <= this.maxZoom; zoom++) {
+                    Long time = this.viewed.get(new RegionProcessor.Tile(zoom, x >> zoom, z >> zoom));
+                    if (time != null) {
+                        lastViewed = Math.max(lastViewed, time);
+                    }
+                }
+                if (lastViewed > 0) {
+                    ticket.tier = TIER_VIEWER;
+                    ticket.order = -lastViewed;
+                    return;
+                }
+            }
+
+            // changed regions, the most out of date first
+            if (ticket.live) {
+                ticket.tier = TIER_LIVE;
+                ticket.order = ticket.queued;
+                return;
+            }
+
+            // everything else spirals out from spawn
+            ticket.tier = TIER_BACKGROUND;
+            ticket.order = distance(x, z, this.spawnX, this.spawnZ);
+        }
+
+        private static int distance(int x1, int z1, int x2, int z2) {
+            return Math.max(Math.abs(x1 - x2), Math.abs(z1 - z2));
+        }
+    }
+}
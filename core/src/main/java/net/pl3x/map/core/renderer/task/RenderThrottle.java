@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.renderer.task;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import net.pl3x.map.core.Pl3xMap;
+import net.pl3x.map.core.configuration.Config;
+
+/**
+ * Scales rendering down while the server is lagging.
+ * <p>
+ * Once a second the average tick time of the server is compared against the configured target.
+ * When the server is over it, the number of regions rendered at once is halved, and it grows
+ * back one region at a time once the server has caught up. If the server is still lagging with
+ * only one region left, render threads also take a short break after every chunk.
+ */
+public class RenderThrottle {
+    private volatile double mspt = -1.0D;
+    private volatile int budget = Integer.MAX_VALUE;
+    private volatile long pause;
+
+    /**
+     * Sample the server's tick time and adjust the render budget.
+     *
+     * @param max the most regions allowed to render at once
+     */
+    public void update(int max) {
+        double target = Config.RENDER_THROTTLE_MSPT;
+        double mspt = Pl3xMap.api().getAverageTickTime();
+        this.mspt = mspt;
+
+        if (target <= 0.0D || mspt < 0.0D) {
+            // disabled, or the platform does not know its tick time
+            this.budget = max;
+            this.pause = 0L;
+            return;
+        }
+
+        int budget = Math.min(this.budget, max);
+        if (mspt > target) {
+            if (budget > 1) {
+                budget = budget / 2;
+            } else {
+                // already down to one region, slow the chunks down too
+                this.pause = Math.min(50L, this.pause + Math.max(1L, (long) (mspt - target)));
+            }
+        } else if (mspt < target * 0.8D) {
+            if (this.pause > 0L) {
+                this.pause = this.pause / 2;
+            } else {
+                budget = Math.min(max, budget + 1);
+            }
+        }
+        this.budget = Math.max(1, budget);
+    }
+
+    /**
+     * Take a short break if the server is lagging even with only one region rendering.
+     * Called by the render threads after every chunk.
+     */
+    public void pace() {
+        long pause = this.pause;
+        if (pause > 0L) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(pause));
+        }
+    }
+
+    /**
+     * Get the number of regions currently allowed to render at once.
+     *
+     * @param max the most regions allowed to render at once
+     * @return current budget
+     */
+    public int getBudget(int max) {
+        return Math.max(1, Math.min(this.budget, max));
+    }
+
+    /**
+     * Get the last sampled average tick time of the server.
+     *
+     * @return milliseconds per tick, or -1 if unknown
+     */
+    public double getMSPT() {
+        return this.mspt;
+    }
+
+    /**
+     * Get the break render threads take after every chunk.
+     *
+     * @return milliseconds per chunk
+     */
+    public long getPause() {
+        return this.pause;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.util;
+
+/**
+ * Integer color math for the per pixel paths of the renderers.
+ * <p>
+ * Alpha weights stay in integer (fixed point) form, so a blend or lerp never converts channels to and from floating
+ * point. The row variants run the same kernels over {@code int[]} pixel rows.
+ */
+public final class ColorMath {
+    /**
+     * Fixed point one for lerp weights, 16 fractional bits.
+     */
+    public static final int ONE = 1 << 16;
+
+    private ColorMath() {
+    }
+
+    /**
+     * Turn a {@code 0.0 - 1.0} delta into a fixed point lerp weight.
+     *
+     * @param delta delta, clamped to {@code 0.0 - 1.0}
+     * @return weight from {@code 0} to {@link #ONE}
+     */
+    public static int weight(float delta) {
+        return (int) (Mathf.clamp(0F, 1F, delta) * ONE);
+    }
+
+    /**
+     * Blends one color over another.
+     * <p>
+     * The result is opaque when either color is, otherwise it is left fully transparent.
+     *
+     * @param color0 color to blend over with
+     * @param color1 color to be blended over
+     * @return resulting blended color
+     */
+    public static int blend(int color0, int color1) {
+        int a0 = color0 >>> 24;
+        if (a0 == 0xFF) {
+            return color0;
+        }
+        int a1 = color1 >>> 24;
+        if (a1 == 0xFF) {
+            // blending over an opaque pixel, by far the most common case
+            int w1 = 0xFF - a0;
+            return 0xFF000000
+                    | div255((color0 >> 16 & 0xFF) * a0 + (color1 >> 16 & 0xFF) * w1) << 16
+                    | div255((color0 >> 8 & 0xFF) * a0 + (color1 >> 8 & 0xFF) * w1) << 8
+                    | div255((color0 & 0xFF) * a0 + (color1 & 0xFF) * w1);
+        }
+        // weights are scaled by 255 * 255
+        int w0 = a0 * 0xFF;
+        int w1 = a1 * (0xFF - a0);
+        int total = w0 + w1;
+        if (total == 0) {
+            return 0;
+        }
+        return ((color0 >> 16 & 0xFF) * w0 + (color1 >> 16 & 0xFF) * w1) / total << 16
+                | ((color0 >> 8 & 0xFF) * w0 + (color1 >> 8 & 0xFF) * w1) / total << 8
+                | ((color0 & 0xFF) * w0 + (color1 & 0xFF) * w1) / total;
+    }
+
+    /**
+     * Blends a row of colors over another row of colors.
+     *
+     * @param over        colors to blend over with
+     * @param overOffset  first index in {@code over}
+     * @param under       colors to be blended over
+     * @param underOffset first index in {@code under}
+     * @param out         resulting blended colors, may be the same array as either input
+     * @param outOffset   first index in {@code out}
+     * @param length      number of colors to blend
+     */
+    public static void blend(int[] over, int overOffset, int[] under, int underOffset, int[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = blend(over[overOffset + i], under[underOffset + i]);
+        }
+    }
+
+    /**
+     * Linearly interpolate the red, green and blue channels of two colors.
+     *
+     * @param color0 color at weight {@code 0}
+     * @param color1 color at weight {@link #ONE}
+     * @param weight fixed point weight, see {@link #weight(float)}
+     * @return interpolated rgb color
+     */
+    public static int lerpRGB(int color0, int color1, int weight) {
+        return lerpChannel(color0, color1, 16, weight) << 16
+                | lerpChannel(color0, color1, 8, weight) << 8
+                | lerpChannel(color0, color1, 0, weight);
+    }
+
+    /**
+     * Linearly interpolate all four channels of two colors.
+     *
+     * @param color0 color at weight {@code 0}
+     * @param color1 color at weight {@link #ONE}
+     * @param weight fixed point weight, see {@link #weight(float)}
+     * @return interpolated argb color
+     */
+    public static int lerpARGB(int color0, int color1, int weight) {
+        return lerpChannel(color0, color1, 24, weight) << 24
+                | lerpChannel(color0, color1, 16, weight) << 16
+                | lerpChannel(color0, color1, 8, weight) << 8
+                | lerpChannel(color0, color1, 0, weight);
+    }
+
+    // exact floor division by 255 for 0 - 65025
+    private static int div255(int value) {
+        return (value + 1 + (value >> 8)) >> 8;
+    }
+
+    private static int lerpChannel(int color0, int color1, int shift, int weight) {
+        int c0 = color0 >>> shift & 0xFF;
+        int c1 = color1 >>> shift & 0xFF;
+        return c0 + ((c1 - c0) * weight >> 16);
+    }
+}
@@ -30,8 +30,8 @@ import java.nio.file.Path;
 import javax.imageio.ImageIO;
 import net.pl3x.map.core.Pl3xMap;
 import net.pl3x.map.core.world.Biome;
+import net.pl3x.map.core.world.BiomeBlend;
 import net.pl3x.map.core.world.BlockState;
-import net.pl3x.map.core.world.Chunk;
 import net.pl3x.map.core.world.Region;
 import org.jetbrains.annotations.NotNull;
 
@@ -104,23 +104,14 @@ public class Colors {
         if (color0 == color1) return color0;
         if (delta >= 1F) return color1;
         if (delta <= 0F) return color0;
-        return rgb(
-                (int) Mathf.lerp(red(color0), red(color1), delta),
-                (int) Mathf.lerp(green(color0), green(color1), delta),
-                (int) Mathf.lerp(blue(color0), blue(color1), delta)
-        );
+        return ColorMath.lerpRGB(color0, color1, ColorMath.weight(delta));
     }
 
     public static int lerpARGB(int color0, int color1, float delta) {
         if (color0 == color1) return color0;
         if (delta >= 1F) return color1;
         if (delta <= 0F) return color0;
-        return argb(
-                (int) Mathf.lerp(alpha(color0), alpha(color1), delta),
-                (int) Mathf.lerp(red(color0), red(color1), delta),
-                (int) Mathf.lerp(green(color0), green(color1), delta),
-                (int) Mathf.lerp(blue(color0), blue(color1), delta)
-        );
+        return ColorMath.lerpARGB(color0, color1, ColorMath.weight(delta));
     }
 
     public static int lerpHSB(int color0, int color1, float delta) {
@@ -200,13 +191,7 @@ public class Colors {
      * @see <a href="https://en.wikipedia.org/wiki/Alpha_compositing#Alpha_blending">Alpha Blending</a>
      */
     public static int blend(int color0, int color1) {
-        double a0 = (double) alpha(color0) / 0xFF;
-        double a1 = (double) alpha(color1) / 0xFF;
-        double a = a0 + a1 * (1 - a0);
-        double r = (red(color0) * a0 + red(color1) * a1 * (1 - a0)) / a;
-        double g = (green(color0) * a0 + green(color1) * a1 * (1 - a0)) / a;
-        double b = (blue(color0) * a0 + blue(color1) * a1 * (1 - a0)) / a;
-        return argb((int) a * 0xFF, (int) r, (int) g, (int) b);
+        return ColorMath.blend(color0, color1);
     }
 
     public static int mix(int color0, int color1) {
@@ -217,46 +202,27 @@ public class Colors {
     }
 
     public static int getFoliageColor(@NotNull Region region, @NotNull Biome biome, int color, int x, int z) {
-        return sampleNeighbors(region, biome, x, z, (biome2, x2, z2) -> mix(biome2.foliage(), color));
+        return mix(sampleNeighbors(region, biome, BiomeBlend.Type.FOLIAGE, x, z), color);
     }
 
     public static int getGrassColor(@NotNull Region region, @NotNull Biome biome, int color, int x, int z) {
-        return sampleNeighbors(region, biome, x, z, (biome2, x2, z2) -> mix(biome2.grass(x2, z2), color));
+        return mix(sampleNeighbors(region, biome, BiomeBlend.Type.GRASS, x, z), color);
     }
 
     public static int getWaterColor(@NotNull Region region, @NotNull Biome biome, int x, int z) {
-        return sampleNeighbors(region, biome, x, z, (biome2, x2, z2) -> biome2.water());
+        return sampleNeighbors(region, biome, BiomeBlend.Type.WATER, x, z);
     }
 
-    private static int sampleNeighbors(@NotNull Region region, @NotNull Biome biome, int x, int z, @NotNull Sampler colorSampler) {
-        int radius = region.getWorld().getConfig().RENDER_BIOME_BLEND;
-        int color = colorSampler.apply(biome, x, z);
-        if (radius < 1) {
-            return color;
+    private static int sampleNeighbors(@NotNull Region region, @NotNull Biome biome, BiomeBlend.@NotNull Type type, int x, int z) {
+        if (region.getWorld().getConfig().RENDER_BIOME_BLEND < 1) {
+            return type.sample(biome, x, z);
         }
-        int red = red(color);
-        int green = green(color);
-        int blue = blue(color);
-        int count = 1;
-        for (int x2 = x - radius; x2 < x + radius; x2++) {
-            for (int z2 = z - radius; z2 < z + radius; z2++) {
-                if (x2 == x && z2 == z) {
-                    continue;
-                }
-                Chunk.BlockData data = region.getWorld().getChunk(region, x2 >> 4, z2 >> 4).getData(x2, z2); // 3%
-                if (data == null) {
-                    continue;
-                }
-                int color2 = colorSampler.apply(data.getBiome(region, x2, z2), x2, z2); // 2%
-                if (color2 > 0) {
-                    red += red(color2);
-                    green += green(color2);
-                    blue += blue(color2);
-                    count++;
-                }
-            }
+        if (region.getX() != x >> 9 || region.getZ() != z >> 9) {
+            // blended colors are kept by the region the column is in
+            region = region.getWorld().getRegion(region, x >> 9, z >> 9);
         }
-        return rgb(red / count, green / count, blue / count);
+        int color = region.getBiomeBlend().getColor(type, x, z);
+        return color != 0 ? color : type.sample(biome, x, z);
     }
 
     public static int fixBlockColor(@NotNull Region region, @NotNull Biome biome, @NotNull BlockState blockstate, int x, int z) {
@@ -336,7 +302,4 @@ public class Colors {
     public static @NotNull String toHex8(int argb) {
         return String.format("#%08X", argb);
     }
-
-    public interface Sampler extends TriFunction<@NotNull Biome, @NotNull Integer, @NotNull Integer, @NotNull Integer> {
-    }
 }
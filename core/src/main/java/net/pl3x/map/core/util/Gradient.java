@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.util;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A gradient between two colors, worked out once into a lookup table.
+ * <p>
+ * For gradients with fixed end colors that are sampled per pixel, where a table read is much cheaper than
+ * interpolating the color every time (HSB especially).
+ */
+public class Gradient {
+    private final int[] colors;
+
+    /**
+     * Create a new gradient.
+     *
+     * @param color0        color at delta {@code 0.0}
+     * @param color1        color at delta {@code 1.0}
+     * @param steps         number of colors in the table
+     * @param interpolation how to interpolate the colors
+     */
+    public Gradient(int color0, int color1, int steps, @NotNull Interpolation interpolation) {
+        if (steps < 2) {
+            throw new IllegalArgumentException("A gradient needs at least 2 steps");
+        }
+        this.colors = new int[steps];
+        for (int i = 0; i < steps; i++) {
+            this.colors[i] = interpolation.lerp(color0, color1, (float) i / (steps - 1));
+        }
+    }
+
+    /**
+     * Create a new 256 step gradient interpolated in HSB.
+     *
+     * @param color0           color at delta {@code 0.0}
+     * @param color1           color at delta {@code 1.0}
+     * @param useShortestAngle go around the hue circle the shortest way
+     * @return new gradient
+     */
+    public static @NotNull Gradient hsb(int color0, int color1, boolean useShortestAngle) {
+        return new Gradient(color0, color1, 256, (c0, c1, delta) -> Colors.lerpHSB(c0, c1, delta, useShortestAngle));
+    }
+
+    /**
+     * Get the color nearest to a point along this gradient.
+     *
+     * @param delta point along the gradient, clamped to {@code 0.0 - 1.0}
+     * @return color
+     */
+    public int get(float delta) {
+        return this.colors[(int) (Mathf.clamp(0F, 1F, delta) * (this.colors.length - 1) + 0.5F)];
+    }
+
+    @FunctionalInterface
+    public interface Interpolation {
+        int lerp(int color0, int color1, float delta);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.world;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import net.pl3x.map.core.util.Colors;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Biome blended foliage, grass and water colors of a region.
+ * <p>
+ * Each color is the average of the biome colors in a square of {@code 2 * radius} blocks around the column. The
+ * averages are worked out with a separable box blur one chunk at a time, the first time a chunk is asked for, so
+ * renderers get a blended color with a single array read instead of sampling every neighbour per pixel.
+ */
+public class BiomeBlend {
+    private final Region region;
+    private final int radius;
+    private final AtomicReferenceArray<int[]>[] planes;
+
+    @SuppressWarnings("unchecked")
+    public BiomeBlend(@NotNull Region region, int radius) {
+        this.region = region;
+        this.radius = Math.max(1, radius);
+        this.planes = new AtomicReferenceArray[Type.values().length];
+        for (int i = 0; i < this.planes.length; i++) {
+            this.planes[i] = new AtomicReferenceArray<>(32 << 5);
+        }
+    }
+
+    public int getRadius() {
+        return this.radius;
+    }
+
+    /**
+     * Get the blended color of a block column in this region.
+     *
+     * @param type   color to get
+     * @param blockX block x coordinate
+     * @param blockZ block z coordinate
+     * @return blended rgb color
+     */
+    public int getColor(@NotNull Type type, int blockX, int blockZ) {
+        AtomicReferenceArray<int[]> plane = this.planes[type.ordinal()];
+        int index = ((blockZ >> 4) & 0x1F) << 5 | ((blockX >> 4) & 0x1F);
+        int[] colors = plane.get(index);
+        if (colors == null) {
+            // two threads may blend the same chunk, they get the same colors
+            colors = blendChunk(type, blockX & ~0xF, blockZ & ~0xF);
+            plane.set(index, colors);
+        }
+        return colors[(blockZ & 0xF) << 4 | (blockX & 0xF)];
+    }
+
+    private int @NotNull [] blendChunk(@NotNull Type type, int minX, int minZ) {
+        // every column blends the samples from -radius to radius - 1 around it
+        int window = this.radius << 1;
+        int size = 15 + window;
+        int startX = minX - this.radius;
+        int startZ = minZ - this.radius;
+
+        int[] red = new int[size * size];
+        int[] green = new int[size * size];
+        int[] blue = new int[size * size];
+        int[] count = new int[size * size];
+        sample(type, startX, startZ, size, red, green, blue, count);
+
+        // horizontal pass, rows of samples into rows of 16 sums
+        int[] rowRed = new int[size << 4];
+        int[] rowGreen = new int[size << 4];
+        int[] rowBlue = new int[size << 4];
+        int[] rowCount = new int[size << 4];
+        for (int z = 0; z < size; z++) {
+            int in = z * size;
+            int out = z << 4;
+            int r = 0, g = 0, b = 0, c = 0;
+            for (int i = 0; i < window; i++) {
+                r += red[in + i];
+                g += green[in + i];
+                b += blue[in + i];
+                c += count[in + i];
+            }
+            for (int x = 0; x < 16; x++) {
+                rowRed[out + x] = r;
+                rowGreen[out + x] = g;
+                rowBlue[out + x] = b;
+                rowCount[out + x] = c;
+                if (x < 15) {
+                    int add = in + x + window;
+                    int remove = in + x;
+                    r += red[add] - red[remove];
+                    g += green[add] - green[remove];
+                    b += blue[add] - blue[remove];
+                    c += count[add] - count[remove];
+                }
+            }
+        }
+
+        // vertical pass, columns of row sums into the blended colors
+        int[] colors = new int[256];
+        for (int x = 0; x < 16; x++) {
+            int r = 0, g = 0, b = 0, c = 0;
+            for (int i = 0; i < window; i++) {
+                int in = i << 4 | x;
+                r += rowRed[in];
+                g += rowGreen[in];
+                b += rowBlue[in];
+                c += rowCount[in];
+            }
+            for (int z = 0; z < 16; z++) {
+                colors[z << 4 | x] = c == 0 ? 0 : Colors.rgb(r / c, g / c, b / c);
+                if (z < 15) {
+                    int add = (z + window) << 4 | x;
+                    int remove = z << 4 | x;
+                    r += rowRed[add] - rowRed[remove];
+                    g += rowGreen[add] - rowGreen[remove];
+                    b += rowBlue[add] - rowBlue[remove];
+                    c += rowCount[add] - rowCount[remove];
+                }
+            }
+        }
+        return colors;
+    }
+
+    private void sample(@NotNull Type type, int startX, int startZ, int size, int[] red, int[] green, int[] blue, int[] count) {
+        World world = this.region.getWorld();
+        int endX = startX + size - 1;
+        int endZ = startZ + size - 1;
+        Chunk.BlockData view = new Chunk.BlockData();
+        // look up each chunk once, the apron reaches into neighbouring chunks and regions
+        for (int chunkZ = startZ >> 4; chunkZ <= endZ >> 4; chunkZ++) {
+            for (int chunkX = startX >> 4; chunkX <= endX >> 4; chunkX++) {
+                Chunk chunk = world.getChunk(this.region, chunkX, chunkZ);
+                int fromX = Math.max(startX, chunkX << 4);
+                int toX = Math.min(endX, (chunkX << 4) + 15);
+                int fromZ = Math.max(startZ, chunkZ << 4);
+                int toZ = Math.min(endZ, (chunkZ << 4) + 15);
+                for (int z = fromZ; z <= toZ; z++) {
+                    for (int x = fromX; x <= toX; x++) {
+                        Chunk.BlockData data = chunk.getData(x, z, view);
+                        if (data == null) {
+                            continue;
+                        }
+                        int color = type.sample(data.getBiome(this.region, x, z), x, z);
+                        if (color <= 0) {
+                            continue;
+                        }
+                        int index = (z - startZ) * size + (x - startX);
+                        red[index] = Colors.red(color);
+                        green[index] = Colors.green(color);
+                        blue[index] = Colors.blue(color);
+                        count[index] = 1;
+                    }
+                }
+            }
+        }
+    }
+
+    public enum Type {
+        FOLIAGE {
+            @Override
+            public int sample(@NotNull Biome biome, int blockX, int blockZ) {
+                return biome.foliage();
+            }
+        },
+        GRASS {
+            @Override
+            public int sample(@NotNull Biome biome, int blockX, int blockZ) {
+                return biome.grass(blockX, blockZ);
+            }
+        },
+        WATER {
+            @Override
+            public int sample(@NotNull Biome biome, int blockX, int blockZ) {
+                return biome.water();
+            }
+        };
+
+        /**
+         * Get the unblended color of a biome at a block column.
+         *
+         * @param biome  biome of the column
+         * @param blockX block x coordinate
+         * @param blockZ block z coordinate
+         * @return rgb color
+         */
+        public abstract int sample(@NotNull Biome biome, int blockX, int blockZ);
+    }
+}
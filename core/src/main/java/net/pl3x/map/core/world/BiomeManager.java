@@ -3,6 +3,7 @@
  */
 package net.pl3x.map.core.world;
 
+import java.util.concurrent.atomic.AtomicLongArray;
 import org.jetbrains.annotations.NotNull;
 
 public class BiomeManager {
@@ -22,6 +23,7 @@ public class BiomeManager {
         double d = (double) (i & 3) / 4.0D;
         double e = (double) (j & 3) / 4.0D;
         double f = (double) (k & 3) / 4.0D;
+        QuartCache cache = region.getQuartCache();
         int o = 0;
         double g = Double.POSITIVE_INFINITY;
         for (int p = 0; p < 8; ++p) {
@@ -34,7 +36,7 @@ public class BiomeManager {
             double h = bl ? d : d - 1.0D;
             double t = bl2 ? e : e - 1.0D;
             double u = bl3 ? f : f - 1.0D;
-            double v = getFiddledDistance(this.hashedSeed, q, r, s, h, t, u);
+            double v = getFiddledDistance(cache.getFiddles(this, q, r, s), h, t, u);
             if (g > v) {
                 o = p;
                 g = v;
@@ -46,23 +48,31 @@ public class BiomeManager {
         return region.getWorld().getChunk(region, x >> 4, z >> 4).getBiome(x, y, z);
     }
 
-    private double getFiddledDistance(long seed, int i, int j, int k, double d, double e, double f) {
+    private double getFiddledDistance(int fiddles, double d, double e, double f) {
+        double g = fiddle(fiddles >> 20 & 0x3FF);
+        double h = fiddle(fiddles >> 10 & 0x3FF);
+        double n = fiddle(fiddles & 0x3FF);
+        return square(f + n) + square(e + h) + square(d + g);
+    }
+
+    // the three fiddles of a quart cell only depend on the seed and the cell, pack them into 10 bits each
+    private int getFiddles(long seed, int i, int j, int k) {
         long m = salt(seed, i);
         m = salt(m, j);
         m = salt(m, k);
         m = salt(m, i);
         m = salt(m, j);
         m = salt(m, k);
-        double g = fiddle(m);
+        int g = Math.floorMod(m >> 24, 1024);
         m = salt(m, seed);
-        double h = fiddle(m);
+        int h = Math.floorMod(m >> 24, 1024);
         m = salt(m, seed);
-        double n = fiddle(m);
-        return square(f + n) + square(e + h) + square(d + g);
+        int n = Math.floorMod(m >> 24, 1024);
+        return g << 20 | h << 10 | n;
     }
 
-    private double fiddle(long l) {
-        double d = (double) Math.floorMod(l >> 24, 1024) / 1024.0D;
+    private double fiddle(int l) {
+        double d = (double) l / 1024.0D;
         return (d - 0.5D) * 0.9D;
     }
 
@@ -73,4 +83,43 @@ public class BiomeManager {
     private double square(double n) {
         return n * n;
     }
+
+    /**
+     * Fiddles of the quart cells (4x4x4 blocks) of one region.
+     * <p>
+     * Every block column asks for the 8 cells around it, so each cell is wanted by dozens of columns. This is a lossy
+     * direct mapped cache, each slot holds the cell it belongs to next to its fiddles, so it needs no locking.
+     */
+    public static class QuartCache {
+        private static final int SLOTS = 1 << 14;
+        private static final long FILLED = 1L << 62;
+
+        private final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+        private final int minQuartX;
+        private final int minQuartZ;
+
+        public QuartCache(@NotNull Region region) {
+            // columns of a region sample the quart cells from one before it up to its last cell
+            this.minQuartX = (region.getX() << 7) - 1;
+            this.minQuartZ = (region.getZ() << 7) - 1;
+        }
+
+        private int getFiddles(@NotNull BiomeManager manager, int quartX, int quartY, int quartZ) {
+            int x = quartX - this.minQuartX;
+            int z = quartZ - this.minQuartZ;
+            if ((x & ~0xFF) != 0 || (z & ~0xFF) != 0) {
+                // neighbouring region, not worth caching
+                return manager.getFiddles(manager.hashedSeed, quartX, quartY, quartZ);
+            }
+            long key = FILLED | (long) (quartY & 0x3FF) << 46 | (long) z << 38 | (long) x << 30;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 50);
+            long entry = this.slots.getOpaque(slot);
+            if ((entry & ~0x3FFFFFFFL) == key) {
+                return (int) (entry & 0x3FFFFFFFL);
+            }
+            int fiddles = manager.getFiddles(manager.hashedSeed, quartX, quartY, quartZ);
+            this.slots.setOpaque(slot, key | fiddles);
+            return fiddles;
+        }
+    }
 }
@@ -23,7 +23,9 @@
  */
 package net.pl3x.map.core.world;
 
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import net.pl3x.map.core.Keyed;
 import net.pl3x.map.core.configuration.ColorsConfig;
 import org.jetbrains.annotations.NotNull;
@@ -35,6 +37,7 @@ public final class Block extends Keyed {
     private final int vanilla;
     private final byte bools;
     private final BlockState defaultState;
+    private final Map<@NotNull Integer, @NotNull BlockState> states = new ConcurrentHashMap<>();
 
     public Block(int index, @NotNull String id, int vanilla) {
         super(id);
@@ -48,15 +51,19 @@ public final class Block extends Keyed {
         boolean water = ColorsConfig.BLOCKS_WATER.contains(id);
         boolean glass = ColorsConfig.BLOCKS_GLASS.contains(id);
 
-        this.bools = (byte) ((air ? 1 << 5 : 0) |
+        boolean fluid = water || "minecraft:lava".equals(id);
+        boolean renderable = fluid || glass || this.color > 0 || vanilla > 0;
+
+        this.bools = (byte) ((renderable ? 1 << 6 : 0) |
+                (air ? 1 << 5 : 0) |
                 (foliage ? 1 << 4 : 0) |
                 (grass ? 1 << 3 : 0) |
                 (water ? 1 << 2 : 0) |
                 (glass ? 1 << 1 : 0) |
-                (water || "minecraft:lava".equals(id) ? 1 : 0)
+                (fluid ? 1 : 0)
         );
 
-        this.defaultState = new BlockState(this);
+        this.defaultState = BlockState.create(this, (byte) -1, (byte) -1, (byte) -1);
     }
 
     public int getIndex() {
@@ -71,6 +78,15 @@ public final class Block extends Keyed {
         return this.vanilla;
     }
 
+    /**
+     * Whether a column walk can stop at this block, either as a fluid, translucent glass or a block with a color.
+     *
+     * @return true if renderable
+     */
+    public boolean isRenderable() {
+        return ((this.bools >> 6) & 1) > 0;
+    }
+
     public boolean isAir() {
         return ((this.bools >> 5) & 1) > 0;
     }
@@ -99,6 +115,23 @@ public final class Block extends Keyed {
         return this.defaultState;
     }
 
+    /**
+     * Get the interned block state of this block with the given properties.
+     * Use -1 for properties that are not set.
+     *
+     * @param age      age property
+     * @param moisture moisture property
+     * @param power    power property
+     * @return block state
+     */
+    public @NotNull BlockState getState(byte age, byte moisture, byte power) {
+        if (age == -1 && moisture == -1 && power == -1) {
+            return this.defaultState;
+        }
+        int key = ((age & 0xFF) << 16) | ((moisture & 0xFF) << 8) | (power & 0xFF);
+        return this.states.computeIfAbsent(key, k -> BlockState.create(this, age, moisture, power));
+    }
+
     @Override
     public boolean equals(@Nullable Object o) {
         if (this == o) {
@@ -23,43 +23,132 @@
  */
 package net.pl3x.map.core.world;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+/**
+ * A block with the properties relevant to rendering.
+ * <p>
+ * Block states are interned, there is only ever one instance for each block and property combination.
+ * Every instance gets a dense int id which can be used in place of the object, see {@link #get(int)}.
+ * Ids are kept per block key and properties, so a block that is created again (like on a reload)
+ * takes over the ids of its old states instead of growing the table.
+ */
 public class BlockState {
+    private static final Object LOCK = new Object();
+    // replaced, never resized in place, so render threads can read it without the lock
+    private static volatile BlockState[] byId = new BlockState[2048];
+    // guarded by the lock
+    private static final Map<@NotNull Key, @NotNull Integer> IDS = new HashMap<>();
+    private static int nextId;
+
+    private final int id;
     private final Block block;
     private final byte age;
     private final byte moisture;
     private final byte power;
 
-    public BlockState(@NotNull Block block) {
+    private BlockState(@NotNull Block block, byte age, byte moisture, byte power) {
         this.block = block;
-        this.age = this.moisture = this.power = -1;
+        this.age = age;
+        this.moisture = moisture;
+        this.power = power;
+
+        synchronized (LOCK) {
+            this.id = IDS.computeIfAbsent(new Key(block.getKey(), age, moisture, power), k -> nextId++);
+            BlockState[] array = byId;
+            if (this.id >= array.length) {
+                array = Arrays.copyOf(array, array.length << 1);
+            }
+            array[this.id] = this;
+            // publish through the volatile field, so readers that see this id see the filled slot
+            byId = array;
+        }
     }
 
+    /**
+     * Create a copy of a block state.
+     *
+     * @param block block
+     * @deprecated block states are interned, use {@link Block#getDefaultState()} instead
+     */
+    @Deprecated
+    public BlockState(@NotNull Block block) {
+        this(block.getDefaultState());
+    }
+
+    /**
+     * Create a copy of a block state.
+     *
+     * @param block      block
+     * @param properties block properties
+     * @deprecated block states are interned, use {@link #of(Block, Map)} instead
+     */
+    @Deprecated
     public BlockState(@NotNull Block block, @NotNull Map<@NotNull String, @NotNull String> properties) {
-        this.block = block;
+        this(of(block, properties));
+    }
 
-        byte age = -1;
-        try {
-            age = Integer.valueOf(properties.get("age")).byteValue();
-        } catch (NumberFormatException ignore) {
-        }
-        this.age = age;
+    private BlockState(@NotNull BlockState interned) {
+        // share the id, so get(int) resolves a copy to the interned instance
+        this.id = interned.id;
+        this.block = interned.block;
+        this.age = interned.age;
+        this.moisture = interned.moisture;
+        this.power = interned.power;
+    }
 
-        byte moisture = -1;
-        try {
-            moisture = Integer.valueOf(properties.get("moisture")).byteValue();
-        } catch (NumberFormatException ignore) {
-        }
-        this.moisture = moisture;
+    static @NotNull BlockState create(@NotNull Block block, byte age, byte moisture, byte power) {
+        return new BlockState(block, age, moisture, power);
+    }
+
+    /**
+     * Get the interned block state for a block and its properties.
+     *
+     * @param block      block
+     * @param properties block properties
+     * @return block state
+     */
+    public static @NotNull BlockState of(@NotNull Block block, @NotNull Map<@NotNull String, @NotNull String> properties) {
+        return block.getState(parse(properties.get("age")), parse(properties.get("moisture")), parse(properties.get("power")));
+    }
+
+    /**
+     * Get a block state by its id.
+     *
+     * @param id block state id
+     * @return block state
+     */
+    public static @NotNull BlockState get(int id) {
+        return byId[id];
+    }
 
-        byte power = -1;
-        try {
-            power = Integer.valueOf(properties.get("power")).byteValue();
-        } catch (NumberFormatException ignore) {
+    /**
+     * Parse a numeric block property.
+     *
+     * @param value property value
+     * @return parsed value, or -1 if missing or not a number
+     */
+    public static byte parse(@Nullable String value) {
+        if (value == null || value.isEmpty() || value.length() > 3) {
+            return -1;
         }
-        this.power = power;
+        int result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return (byte) result;
+    }
+
+    public int getId() {
+        return this.id;
     }
 
     public @NotNull Block getBlock() {
@@ -77,4 +166,7 @@ public class BlockState {
     public byte getPower() {
         return this.power;
     }
+
+    private record Key(@NotNull String block, byte age, byte moisture, byte power) {
+    }
 }
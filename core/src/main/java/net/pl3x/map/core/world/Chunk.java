@@ -23,19 +23,24 @@
  */
 package net.pl3x.map.core.world;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.function.Supplier;
+import net.pl3x.map.core.Pl3xMap;
 import net.pl3x.map.core.util.Colors;
+import net.pl3x.map.core.util.MCAMath;
 import net.querz.nbt.tag.ByteTag;
 import net.querz.nbt.tag.CompoundTag;
 import net.querz.nbt.tag.IntTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.StringTag;
 import net.querz.nbt.tag.Tag;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public abstract class Chunk {
+    private static final int[] NO_GLASS = new int[0];
+
     private final World world;
     private final Region region;
 
@@ -45,7 +50,15 @@ public abstract class Chunk {
 
     private final long inhabitedTime;
 
-    protected final BlockData[] data = new BlockData[256];
+    // scan results of each column, indexed by (z << 4) + x, allocated when populated
+    private int[] blockY;
+    private int[] fluidY;
+    private int[] blockStates;
+    private int[] fluidStates;
+    private Biome[] biomes;
+    // glass colors of column i are glassColors[glassOffsets[i]] up to glassOffsets[i + 1], bottom first
+    private int[] glassOffsets;
+    private int[] glassColors;
 
     protected boolean populated;
 
@@ -81,6 +94,35 @@ public abstract class Chunk {
         return failsafe.get();
     }
 
+    /**
+     * Read a block palette into block state ids.
+     *
+     * @param paletteTag palette entries
+     * @return block state id for each palette entry
+     */
+    protected static int @NotNull [] readBlockPalette(@NotNull ListTag<@NotNull CompoundTag> paletteTag) {
+        int[] palette = new int[paletteTag.size()];
+        for (int i = 0; i < palette.length; i++) {
+            CompoundTag entry = paletteTag.get(i);
+            Block block = Pl3xMap.api().getBlockRegistry().getOrDefault(entry.getString("Name"), Blocks.AIR);
+            CompoundTag properties = entry.getCompoundTag("Properties");
+            if (properties == null) {
+                palette[i] = block.getDefaultState().getId();
+            } else {
+                palette[i] = block.getState(
+                        property(properties, "age"),
+                        property(properties, "moisture"),
+                        property(properties, "power")
+                ).getId();
+            }
+        }
+        return palette;
+    }
+
+    private static byte property(@NotNull CompoundTag properties, @NotNull String name) {
+        return properties.get(name) instanceof StringTag tag ? BlockState.parse(tag.getValue()) : -1;
+    }
+
     public @NotNull World getWorld() {
         return this.world;
     }
@@ -117,80 +159,198 @@ public abstract class Chunk {
 
     public abstract @NotNull Biome getBiome(int x, int y, int z);
 
+    /**
+     * Get the mask of a section, used by column walks to step over sections that can not stop them.
+     *
+     * @param sectionY section y coordinate
+     * @return section mask, or null if this chunk has no section information and must be walked block by block
+     */
+    protected @Nullable SectionMask getSectionMask(int sectionY) {
+        return null;
+    }
+
+    /**
+     * Step a downward column walk over whole sections that hold no renderable block in this column.
+     *
+     * @param x block x coordinate
+     * @param y block y coordinate to start at
+     * @param z block z coordinate
+     * @return highest y at or below the given y that may hold a renderable block, or min build height if a skip reached it
+     * @see Block#isRenderable()
+     */
+    public int nextRenderableY(int x, int y, int z) {
+        int column = ((z & 0xF) << 4) + (x & 0xF);
+        int minY = getWorld().getMinBuildHeight();
+        while (y > minY) {
+            SectionMask mask = getSectionMask(y >> 4);
+            if (mask == null || mask.mayRender(column)) {
+                return y;
+            }
+            y = Math.max((y & ~0xF) - 1, minY);
+        }
+        return y;
+    }
+
+    /**
+     * Step a downward column walk over whole sections that hold no air in this column.
+     *
+     * @param x block x coordinate
+     * @param y block y coordinate to start at
+     * @param z block z coordinate
+     * @return highest y at or below the given y that may hold air, or min build height if a skip reached it
+     */
+    public int nextAirY(int x, int y, int z) {
+        int column = ((z & 0xF) << 4) + (x & 0xF);
+        int minY = getWorld().getMinBuildHeight();
+        while (y > minY) {
+            SectionMask mask = getSectionMask(y >> 4);
+            if (mask == null || mask.mayHaveAir(column)) {
+                return y;
+            }
+            y = Math.max((y & ~0xF) - 1, minY);
+        }
+        return y;
+    }
+
     public @NotNull Chunk populate() {
         if (this.populated) {
             return this;
         }
 
-        // scan chunk for relevant data
-        // block coordinates for most northwest block in chunk
-        int startX = getX() << 4;
-        int startZ = getZ() << 4;
+        this.blockY = new int[256];
+        this.fluidY = new int[256];
+        this.blockStates = new int[256];
+        this.fluidStates = new int[256];
+        this.biomes = new Biome[256];
 
-        // iterate each block in this chunk
-        for (int blockZ = startX; blockZ < startX + 16; blockZ++) {
-            for (int blockX = startZ; blockX < startZ + 16; blockX++) {
-                BlockData data = new BlockData();
-                data.blockY = noHeightmap() ? getWorld().getMaxBuildHeight() : getWorldSurfaceY(blockX, blockZ) + 1;
+        boolean translucentGlass = getWorld().getConfig().RENDER_TRANSLUCENT_GLASS;
+        int[] glass = null;
+        int glassCount = 0;
+
+        // scan chunk for relevant data
+        // iterate each block in this chunk, in index order
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                int index = (z << 4) + x;
+                int blockY = noHeightmap() ? getWorld().getMaxBuildHeight() : getWorldSurfaceY(x, z) + 1;
+                int fluidY = 0;
+                BlockState blockstate;
+                BlockState fluidstate = null;
+                int glassStart = glassCount;
 
                 // if world has ceiling iterate down until we find air
                 if (getWorld().hasCeiling()) {
-                    data.blockY = getWorld().getLogicalHeight();
+                    blockY = getWorld().getLogicalHeight();
                     do {
-                        data.blockY -= 1;
-                        data.blockstate = getBlockState(blockX, data.blockY, blockZ);
-                    } while (data.blockY > getWorld().getMinBuildHeight() && !data.blockstate.getBlock().isAir());
+                        blockY = nextAirY(x, blockY - 1, z);
+                        blockstate = getBlockState(x, blockY, z);
+                    } while (blockY > getWorld().getMinBuildHeight() && !blockstate.getBlock().isAir());
                 }
 
-                // iterate down until we find a renderable block
+                // iterate down until we find a renderable block, skipping sections without any
                 do {
-                    data.blockY -= 1;
-                    data.blockstate = getBlockState(blockX, data.blockY, blockZ);
-                    if (data.blockstate.getBlock().isFluid()) {
-                        if (data.fluidstate == null) {
+                    blockY = nextRenderableY(x, blockY - 1, z);
+                    blockstate = getBlockState(x, blockY, z);
+                    if (blockstate.getBlock().isFluid()) {
+                        if (fluidstate == null) {
                             // get fluid information for the top fluid block
-                            data.fluidY = data.blockY;
-                            data.fluidstate = data.blockstate;
-                            // do not get biome here! causes stackoverflow!
-                            // instead, biome will be lazy loaded on first get
-                            //data.fluidBiome = getWorld().getBiome(blockX, data.fluidY, blockZ);
+                            fluidY = blockY;
+                            fluidstate = blockstate;
                         }
                         continue;
                     }
 
-                    if (getWorld().getConfig().RENDER_TRANSLUCENT_GLASS && data.blockstate.getBlock().isGlass()) {
+                    if (translucentGlass && blockstate.getBlock().isGlass()) {
                         // translucent glass. store this color and keep iterating
-                        data.glass.addFirst(Colors.setAlpha(0x99, data.blockstate.getBlock().color()));
+                        if (glass == null) {
+                            glass = new int[16];
+                            this.glassOffsets = new int[257];
+                        } else if (glassCount == glass.length) {
+                            glass = Arrays.copyOf(glass, glassCount << 1);
+                        }
+                        glass[glassCount++] = Colors.setAlpha(0x99, blockstate.getBlock().color());
                         continue;
                     }
 
                     // test if block is renderable. we ignore blocks with black color
-                    if (data.blockstate.getBlock().color() > 0) {
+                    if (blockstate.getBlock().color() > 0) {
                         break;
                     }
-                } while (data.blockY > getWorld().getMinBuildHeight());
+                } while (blockY > getWorld().getMinBuildHeight());
 
-                // determine the biome of final block
-                // do not get biome here! causes stackoverflow!
-                // instead, biome will be lazy loaded on first get
-                //data.blockBiome = getWorld().getBiome(blockX, data.blockY, blockZ);
+                // biome is lazy loaded on first get, getting it here causes a stackoverflow
 
                 // save data
-                this.data[((blockZ & 0xF) << 4) + (blockX & 0xF)] = data;
+                this.blockY[index] = blockY;
+                this.fluidY[index] = fluidY;
+                this.blockStates[index] = blockstate.getId();
+                this.fluidStates[index] = fluidstate == null ? -1 : fluidstate.getId();
+                if (this.glassOffsets != null) {
+                    // glass was found top down, store it bottom first
+                    reverse(glass, glassStart, glassCount);
+                    this.glassOffsets[index + 1] = glassCount;
+                }
             }
         }
 
+        if (glass != null) {
+            this.glassColors = glass;
+        }
+
         this.populated = true;
 
         return this;
     }
 
-    public @NotNull BlockData[] getData() {
-        return this.data;
+    private static void reverse(int @NotNull [] array, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    public boolean isPopulated() {
+        return this.populated;
     }
 
+    /**
+     * Get the y of the top renderable block of a populated column.
+     *
+     * @param x block x coordinate
+     * @param z block z coordinate
+     * @return block y
+     */
+    public int getBlockY(int x, int z) {
+        return this.blockY[((z & 0xF) << 4) + (x & 0xF)];
+    }
+
+    /**
+     * Get a view of the scan results of a column.
+     *
+     * @param x block x coordinate
+     * @param z block z coordinate
+     * @return new view of the column, or null if this chunk is not populated
+     */
     public @Nullable BlockData getData(int x, int z) {
-        return this.data[((z & 0xF) << 4) + (x & 0xF)];
+        return getData(x, z, new BlockData());
+    }
+
+    /**
+     * Point a view at the scan results of a column, so a scan can reuse one view for every column.
+     *
+     * @param x    block x coordinate
+     * @param z    block z coordinate
+     * @param view view to reuse
+     * @return the view, or null if this chunk is not populated
+     */
+    public @Nullable BlockData getData(int x, int z, @NotNull BlockData view) {
+        if (!this.populated) {
+            return null;
+        }
+        view.chunk = this;
+        view.index = ((z & 0xF) << 4) + (x & 0xF);
+        return view;
     }
 
     public static @NotNull Chunk create(@NotNull World world, @NotNull Region region, @NotNull CompoundTag tag, int index) {
@@ -238,41 +398,175 @@ public abstract class Chunk {
                 + "}";
     }
 
-    public static class BlockData {
-        protected int blockY;
-        protected int fluidY = 0;
-        protected BlockState blockstate;
-        protected BlockState fluidstate = null;
-        protected Biome biome;
+    /**
+     * Which columns of a chunk section hold renderable blocks or air, one bit per column indexed by
+     * <code>(z << 4) + x</code>.
+     * <p>
+     * Masks are conservative, a set bit only means the column may hold such a block in this section.
+     */
+    protected static final class SectionMask {
+        /**
+         * Mask of a missing section, which reads as air everywhere.
+         */
+        public static final SectionMask EMPTY = new SectionMask(new long[4], filled());
+
+        private static final SectionMask SOLID = new SectionMask(new long[4], new long[4]);
+        private static final SectionMask UNKNOWN = new SectionMask(filled(), filled());
+
+        private final long[] renderable;
+        private final long[] air;
+
+        private SectionMask(long @NotNull [] renderable, long @NotNull [] air) {
+            this.renderable = renderable;
+            this.air = air;
+        }
+
+        private static long @NotNull [] filled() {
+            return new long[]{-1L, -1L, -1L, -1L};
+        }
+
+        /**
+         * Build the mask of a section from its block palette and packed palette indices.
+         *
+         * @param palette      block state id of each palette entry
+         * @param blocks       packed palette index of each block, in y, z, x order
+         * @param bitsPerBlock bits of each packed value
+         * @param stream       true if values may span two longs (before 1.16), false if they are padded per long
+         * @return section mask
+         */
+        public static @NotNull SectionMask of(int @NotNull [] palette, long @NotNull [] blocks, int bitsPerBlock, boolean stream) {
+            // mirror Section.getBlockState, a single entry palette fills the section and no data reads as air
+            if (palette.length == 1) {
+                Block block = BlockState.get(palette[0]).getBlock();
+                return block.isRenderable() ? UNKNOWN : block.isAir() ? EMPTY : SOLID;
+            }
+            if (blocks.length == 0) {
+                return EMPTY;
+            }
+
+            boolean[] renderableEntry = new boolean[palette.length];
+            boolean[] airEntry = new boolean[palette.length];
+            boolean anyRenderable = false;
+            boolean allAir = true;
+            for (int i = 0; i < palette.length; i++) {
+                Block block = BlockState.get(palette[i]).getBlock();
+                renderableEntry[i] = block.isRenderable();
+                airEntry[i] = block.isAir();
+                anyRenderable |= renderableEntry[i];
+                allAir &= airEntry[i];
+            }
+            if (!anyRenderable && allAir) {
+                return EMPTY;
+            }
+
+            // data too short for its bit width, leave it to the block by block walk
+            if (bitsPerBlock <= 0 || bitsPerBlock > 32
+                    || blocks.length < (stream ? bitsPerBlock << 6 : 4095 / (64 / bitsPerBlock) + 1)) {
+                return UNKNOWN;
+            }
+
+            long[] renderable = new long[4];
+            long[] air = new long[4];
+            for (int i = 0; i < 4096; i++) {
+                int value = (int) (stream
+                        ? MCAMath.getValueFromLongStream(blocks, i, bitsPerBlock)
+                        : MCAMath.getValueFromLongArray(blocks, i, bitsPerBlock));
+                int column = i & 0xFF;
+                if (value >= palette.length) {
+                    // values outside the palette read as air
+                    air[column >> 6] |= 1L << column;
+                    continue;
+                }
+                if (renderableEntry[value]) {
+                    renderable[column >> 6] |= 1L << column;
+                }
+                if (airEntry[value]) {
+                    air[column >> 6] |= 1L << column;
+                }
+            }
+            return new SectionMask(renderable, air);
+        }
 
-        protected final LinkedList<Integer> glass = new LinkedList<>();
+        public boolean mayRender(int column) {
+            return (this.renderable[column >> 6] & 1L << column) != 0;
+        }
+
+        public boolean mayHaveAir(int column) {
+            return (this.air[column >> 6] & 1L << column) != 0;
+        }
+    }
+
+    /**
+     * A view of the scan results of one column of a chunk.
+     * <p>
+     * The results live in the chunk's arrays, a view is only a pointer to a column. Views may be reused for other
+     * columns, so do not keep hold of one after handling its column.
+     */
+    public static class BlockData {
+        private Chunk chunk;
+        private int index;
 
         public int getBlockY() {
-            return this.blockY;
+            return this.chunk.blockY[this.index];
         }
 
         public int getFluidY() {
-            return this.fluidY;
+            return this.chunk.fluidY[this.index];
         }
 
         public @NotNull BlockState getBlockState() {
-            return this.blockstate;
+            return BlockState.get(this.chunk.blockStates[this.index]);
         }
 
         public @Nullable BlockState getFluidState() {
-            return this.fluidstate;
+            int id = this.chunk.fluidStates[this.index];
+            return id < 0 ? null : BlockState.get(id);
         }
 
         public @NotNull Biome getBiome(@NotNull Region region, int x, int z) {
-            if (this.biome == null) {
+            Biome biome = this.chunk.biomes[this.index];
+            if (biome == null) {
                 // calculate real biome
-                this.biome = region.getWorld().getBiomeManager().getBiome(region, x, this.blockY, z);
+                biome = region.getWorld().getBiomeManager().getBiome(region, x, getBlockY(), z);
+                this.chunk.biomes[this.index] = biome;
             }
-            return this.biome;
+            return biome;
+        }
+
+        /**
+         * Get the number of translucent glass blocks above this column's block.
+         *
+         * @return glass count
+         */
+        public int getGlassCount() {
+            int[] offsets = this.chunk.glassOffsets;
+            return offsets == null ? 0 : offsets[this.index + 1] - offsets[this.index];
         }
 
-        public @NotNull List<Integer> getGlassColors() {
-            return this.glass;
+        /**
+         * Get the color of a translucent glass block above this column's block, bottom first.
+         *
+         * @param i glass index, from 0 to {@link #getGlassCount()}
+         * @return glass color
+         */
+        public int getGlassColor(int i) {
+            return this.chunk.glassColors[this.chunk.glassOffsets[this.index] + i];
+        }
+
+        /**
+         * Get the colors of the translucent glass blocks above this column's block, bottom first.
+         * <p>
+         * This copies the colors, loop over {@link #getGlassColor(int)} in hot paths instead.
+         *
+         * @return glass colors
+         */
+        public int @NotNull [] getGlassColors() {
+            int count = getGlassCount();
+            if (count == 0) {
+                return NO_GLASS;
+            }
+            int start = this.chunk.glassOffsets[this.index];
+            return Arrays.copyOfRange(this.chunk.glassColors, start, start + count);
         }
     }
 }
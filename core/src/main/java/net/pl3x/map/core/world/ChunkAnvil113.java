@@ -25,15 +25,11 @@
 package net.pl3x.map.core.world;
 
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import net.pl3x.map.core.Pl3xMap;
 import net.pl3x.map.core.util.MCAMath;
 import net.querz.nbt.tag.ByteArrayTag;
 import net.querz.nbt.tag.CompoundTag;
 import net.querz.nbt.tag.IntArrayTag;
 import net.querz.nbt.tag.ListTag;
-import net.querz.nbt.tag.StringTag;
 import net.querz.nbt.tag.Tag;
 import org.jetbrains.annotations.NotNull;
 
@@ -104,6 +100,15 @@ public class ChunkAnvil113 extends Chunk {
         return section == null ? Blocks.AIR.getDefaultState() : section.getBlockState(x, y, z);
     }
 
+    @Override
+    protected @NotNull SectionMask getSectionMask(int sectionY) {
+        if (sectionY < 0 || sectionY >= this.sections.length) {
+            return SectionMask.EMPTY;
+        }
+        Section section = this.sections[sectionY];
+        return section == null ? SectionMask.EMPTY : section.getMask();
+    }
+
     @Override
     public int getLight(int x, int y, int z) {
         int sectionY = y >> 4;
@@ -141,8 +146,9 @@ public class ChunkAnvil113 extends Chunk {
         private final int sectionY;
         private byte[] blockLight;
         private long[] blocks;
-        private BlockState[] palette = new BlockState[0];
+        private int[] palette = new int[0];
         private final int bitsPerBlock;
+        private SectionMask mask;
 
         public Section(@NotNull CompoundTag sectionData) {
             this.sectionY = sectionData.getByte("Y");
@@ -158,20 +164,7 @@ public class ChunkAnvil113 extends Chunk {
 
             if (sectionData.containsKey("palette")) {
                 ListTag<CompoundTag> paletteTag = sectionData.getListTag("palette").asCompoundTagList();
-                this.palette = new BlockState[paletteTag.size()];
-                for (int i = 0; i < this.palette.length; i++) {
-                    CompoundTag stateTag = paletteTag.get(i);
-                    String id = stateTag.getString("Name");
-                    Block block = Pl3xMap.api().getBlockRegistry().getOrDefault(id, Blocks.AIR);
-                    Map<String, String> properties = new HashMap<>();
-                    CompoundTag propertiesTag = stateTag.getCompoundTag("Properties");
-                    if (propertiesTag != null) {
-                        for (Map.Entry<String, Tag<?>> property : propertiesTag) {
-                            properties.put(property.getKey().toLowerCase(), ((StringTag) property.getValue()).getValue().toLowerCase());
-                        }
-                    }
-                    this.palette[i] = new BlockState(block, properties);
-                }
+                this.palette = readBlockPalette(paletteTag);
             }
 
             this.bitsPerBlock = this.blocks.length >> 6;
@@ -179,7 +172,7 @@ public class ChunkAnvil113 extends Chunk {
 
         public @NotNull BlockState getBlockState(int x, int y, int z) {
             if (this.palette.length == 1) {
-                return this.palette[0];
+                return BlockState.get(this.palette[0]);
             }
             if (this.blocks.length == 0) {
                 return Blocks.AIR.getDefaultState();
@@ -189,7 +182,15 @@ public class ChunkAnvil113 extends Chunk {
             if (value >= this.palette.length) {
                 return Blocks.AIR.getDefaultState();
             }
-            return this.palette[(int) value];
+            return BlockState.get(this.palette[(int) value]);
+        }
+
+        public @NotNull SectionMask getMask() {
+            // built on first use, threads racing here build equal immutable masks
+            if (this.mask == null) {
+                this.mask = SectionMask.of(this.palette, this.blocks, this.bitsPerBlock, true);
+            }
+            return this.mask;
         }
 
         public int getLight(int x, int y, int z) {
@@ -26,16 +26,12 @@ package net.pl3x.map.core.world;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import net.pl3x.map.core.Pl3xMap;
 import net.pl3x.map.core.util.MCAMath;
 import net.pl3x.map.core.util.PackedIntArrayAccess;
 import net.querz.nbt.tag.CompoundTag;
 import net.querz.nbt.tag.ListTag;
 import net.querz.nbt.tag.StringTag;
-import net.querz.nbt.tag.Tag;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -91,6 +87,12 @@ public class ChunkAnvil118 extends Chunk {
         return section == null ? Blocks.AIR.getDefaultState() : section.getBlockState(x, y, z);
     }
 
+    @Override
+    protected @NotNull SectionMask getSectionMask(int sectionY) {
+        Section section = getSection(sectionY);
+        return section == null ? SectionMask.EMPTY : section.getMask();
+    }
+
     @Override
     public int getLight(int x, int y, int z) {
         int sectionY = y >> 4;
@@ -132,9 +134,10 @@ public class ChunkAnvil118 extends Chunk {
         private byte[] blockLight;
         private long[] blocks;
         private long[] biomes = new long[0];
-        private BlockState[] blockPalette = new BlockState[0];
+        private int[] blockPalette = new int[0];
         private Biome[] biomePalette = new Biome[0];
         private final int bitsPerBlock;
+        private SectionMask mask;
         private final int bitsPerBiome;
 
         public Section(@NotNull World world, @NotNull CompoundTag sectionData) {
@@ -147,20 +150,7 @@ public class ChunkAnvil118 extends Chunk {
                 this.blocks = blockStatesTag.getLongArray("data");
                 if (blockStatesTag.containsKey("palette")) {
                     ListTag<CompoundTag> paletteTag = blockStatesTag.getListTag("palette").asCompoundTagList();
-                    this.blockPalette = new BlockState[paletteTag.size()];
-                    for (int i = 0; i < this.blockPalette.length; i++) {
-                        CompoundTag entry = paletteTag.get(i);
-                        String id = entry.getString("Name");
-                        Block block = Pl3xMap.api().getBlockRegistry().getOrDefault(id, Blocks.AIR);
-                        Map<String, String> properties = new HashMap<>();
-                        CompoundTag propertiesTag = entry.getCompoundTag("Properties");
-                        if (propertiesTag != null) {
-                            for (Map.Entry<String, Tag<?>> property : propertiesTag) {
-                                properties.put(property.getKey().toLowerCase(), ((StringTag) property.getValue()).getValue().toLowerCase());
-                            }
-                        }
-                        this.blockPalette[i] = new BlockState(block, properties);
-                    }
+                    this.blockPalette = readBlockPalette(paletteTag);
                 }
             }
 
@@ -188,7 +178,7 @@ public class ChunkAnvil118 extends Chunk {
 
         public @NotNull BlockState getBlockState(int x, int y, int z) {
             if (this.blockPalette.length == 1) {
-                return this.blockPalette[0];
+                return BlockState.get(this.blockPalette[0]);
             }
             if (this.blocks.length == 0) {
                 return Blocks.AIR.getDefaultState();
@@ -198,7 +188,15 @@ public class ChunkAnvil118 extends Chunk {
             if (value >= this.blockPalette.length) {
                 return Blocks.AIR.getDefaultState();
             }
-            return this.blockPalette[(int) value];
+            return BlockState.get(this.blockPalette[(int) value]);
+        }
+
+        public @NotNull SectionMask getMask() {
+            // built on first use, threads racing here build equal immutable masks
+            if (this.mask == null) {
+                this.mask = SectionMask.of(this.blockPalette, this.blocks, this.bitsPerBlock, false);
+            }
+            return this.mask;
         }
 
         public int getLight(int x, int y, int z) {
@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.world;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import net.pl3x.map.core.markers.Point;
+import net.pl3x.map.core.util.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps the chunk timestamp table of each region file as it was when the region was last rendered.
+ */
+public class ChunkModifiedState {
+    private final Set<@NotNull Point> forced = ConcurrentHashMap.newKeySet();
+    private final Path dir;
+
+    public ChunkModifiedState(@NotNull World world) {
+        this.dir = world.getTilesDirectory().resolve(".cms");
+    }
+
+    /**
+     * Forget the stored timestamps so the next render of these regions renders every chunk.
+     *
+     * @param regions regions to fully render next time
+     */
+    public void invalidate(@NotNull Collection<@NotNull Point> regions) {
+        this.forced.addAll(regions);
+    }
+
+    /**
+     * Get the chunks of a region that changed since it was last rendered.
+     *
+     * @param region     region position
+     * @param timestamps current chunk timestamp table of the region file
+     * @return modified chunk indices, or null if the whole region needs rendering
+     */
+    public @Nullable BitSet getModifiedChunks(@NotNull Point region, int @NotNull [] timestamps) {
+        if (this.forced.remove(region)) {
+            return null;
+        }
+        int[] stored = read(region);
+        if (stored == null) {
+            return null;
+        }
+        BitSet modified = new BitSet(timestamps.length);
+        for (int i = 0; i < timestamps.length; i++) {
+            if (timestamps[i] != stored[i]) {
+                modified.set(i);
+            }
+        }
+        return modified;
+    }
+
+    public void set(@NotNull Point region, int @NotNull [] timestamps) {
+        FileUtil.createDirs(this.dir);
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(getFile(region).toFile())))) {
+            for (int timestamp : timestamps) {
+                out.writeInt(timestamp);
+            }
+            out.flush();
+        } catch (Throwable ignore) {
+        }
+    }
+
+    private int @Nullable [] read(@NotNull Point region) {
+        Path file = getFile(region);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new FileInputStream(file.toFile())))) {
+            int[] timestamps = new int[32 << 5];
+            for (int i = 0; i < timestamps.length; i++) {
+                timestamps[i] = in.readInt();
+            }
+            return timestamps;
+        } catch (Throwable ignore) {
+            return null;
+        }
+    }
+
+    private @NotNull Path getFile(@NotNull Point region) {
+        return this.dir.resolve(region.x() + "_" + region.z());
+    }
+}
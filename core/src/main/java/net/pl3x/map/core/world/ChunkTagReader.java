@@ -0,0 +1,341 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-2023 William Blake Galbreath
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.pl3x.map.core.world;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import net.querz.nbt.tag.ByteArrayTag;
+import net.querz.nbt.tag.ByteTag;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.DoubleTag;
+import net.querz.nbt.tag.FloatTag;
+import net.querz.nbt.tag.IntArrayTag;
+import net.querz.nbt.tag.IntTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.LongArrayTag;
+import net.querz.nbt.tag.LongTag;
+import net.querz.nbt.tag.ShortTag;
+import net.querz.nbt.tag.StringTag;
+import net.querz.nbt.tag.Tag;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Streaming NBT reader for chunk data.
+ * <p>
+ * Only the tags read by the {@link Chunk} implementations are turned into {@link Tag}s, everything
+ * else (entities, block entities, structures, ticks, sky light, etc.) is skipped straight off the stream.
+ */
+public class ChunkTagReader {
+    private static final int MAX_DEPTH = Tag.DEFAULT_MAX_DEPTH;
+
+    private static final byte END = 0;
+    private static final byte BYTE = 1;
+    private static final byte SHORT = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte BYTE_ARRAY = 7;
+    private static final byte STRING = 8;
+    private static final byte LIST = 9;
+    private static final byte COMPOUND = 10;
+    private static final byte INT_ARRAY = 11;
+    private static final byte LONG_ARRAY = 12;
+
+    private static final Filter PALETTE = new Filter()
+            .keep("Name")
+            .keep("Properties", Filter.ALL);
+    private static final Filter CONTAINER = new Filter()
+            .keep("data")
+            .keep("palette", PALETTE);
+    private static final Filter SECTION = new Filter()
+            .keep("Y")
+            .keep("BlockLight")
+            .keep("BlockStates")
+            .keep("Palette", PALETTE)
+            .keep("palette", PALETTE)
+            .keep("block_states", CONTAINER)
+            .keep("biomes", CONTAINER);
+    private static final Filter LEVEL = new Filter()
+            .keep("DataVersion")
+            .keep("Status")
+            .keep("xPos")
+            .keep("yPos")
+            .keep("zPos")
+            .keep("InhabitedTime")
+            .keep("Biomes")
+            .keep("Heightmaps", new Filter().keep("WORLD_SURFACE"))
+            .keep("Sections", SECTION)
+            .keep("sections", SECTION);
+    private static final Filter ROOT = LEVEL.copy()
+            .keep("Level", LEVEL);
+
+    private final DataInputStream in;
+
+    private byte[] name = new byte[32];
+
+    public ChunkTagReader(@NotNull DataInputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Read the root chunk tag, keeping only the data needed for rendering.
+     *
+     * @return chunk tag, or null if the root tag is not a compound tag
+     * @throws IOException if the stream could not be read
+     */
+    public @Nullable CompoundTag read() throws IOException {
+        byte type = this.in.readByte();
+        if (type != COMPOUND) {
+            return null;
+        }
+        skipName();
+        return readCompound(ROOT, 0);
+    }
+
+    private @NotNull CompoundTag readCompound(@NotNull Filter filter, int depth) throws IOException {
+        checkDepth(depth);
+        CompoundTag tag = new CompoundTag();
+        byte type;
+        while ((type = this.in.readByte()) != END) {
+            if (filter == Filter.ALL) {
+                String name = this.in.readUTF();
+                putTag(tag, name, readTag(type, Filter.ALL, depth + 1));
+                continue;
+            }
+            int index = readName(filter);
+            if (index < 0) {
+                skipTag(type, depth + 1);
+                continue;
+            }
+            putTag(tag, filter.names[index], readTag(type, filter.children[index], depth + 1));
+        }
+        return tag;
+    }
+
+    private void putTag(@NotNull CompoundTag compound, @NotNull String name, @Nullable Tag<?> tag) {
+        if (tag != null) {
+            compound.put(name, tag);
+        }
+    }
+
+    private @Nullable Tag<?> readTag(byte type, @NotNull Filter filter, int depth) throws IOException {
+        return switch (type) {
+            case BYTE -> new ByteTag(this.in.readByte());
+            case SHORT -> new ShortTag(this.in.readShort());
+            case INT -> new IntTag(this.in.readInt());
+            case LONG -> new LongTag(this.in.readLong());
+            case FLOAT -> new FloatTag(this.in.readFloat());
+            case DOUBLE -> new DoubleTag(this.in.readDouble());
+            case BYTE_ARRAY -> {
+                byte[] value = new byte[readLength()];
+                this.in.readFully(value);
+                yield new ByteArrayTag(value);
+            }
+            case STRING -> new StringTag(this.in.readUTF());
+            case LIST -> readList(filter, depth);
+            case COMPOUND -> readCompound(filter, depth);
+            case INT_ARRAY -> {
+                int[] value = new int[readLength()];
+                for (int i = 0; i < value.length; i++) {
+                    value[i] = this.in.readInt();
+                }
+                yield new IntArrayTag(value);
+            }
+            case LONG_ARRAY -> {
+                long[] value = new long[readLength()];
+                for (int i = 0; i < value.length; i++) {
+                    value[i] = this.in.readLong();
+                }
+                yield new LongArrayTag(value);
+            }
+            default -> throw new IOException("Invalid tag type " + type);
+        };
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private @Nullable ListTag<?> readList(@NotNull Filter filter, int depth) throws IOException {
+        checkDepth(depth);
+        byte type = this.in.readByte();
+        int size = readLength();
+        if (type == END || size == 0) {
+            // empty lists are treated the same as missing lists
+            return null;
+        }
+        ListTag list = new ListTag(tagClass(type));
+        for (int i = 0; i < size; i++) {
+            Tag<?> tag = readTag(type, filter, depth + 1);
+            if (tag != null) {
+                list.add(tag);
+            }
+        }
+        return list;
+    }
+
+    private void skipTag(byte type, int depth) throws IOException {
+        switch (type) {
+            case BYTE -> skip(1);
+            case SHORT -> skip(2);
+            case INT, FLOAT -> skip(4);
+            case LONG, DOUBLE -> skip(8);
+            case BYTE_ARRAY -> skip(readLength());
+            case STRING -> skip(this.in.readUnsignedShort());
+            case LIST -> {
+                checkDepth(depth);
+                byte listType = this.in.readByte();
+                int size = readLength();
+                int width = switch (listType) {
+                    case END -> 0;
+                    case BYTE -> 1;
+                    case SHORT -> 2;
+                    case INT, FLOAT -> 4;
+                    case LONG, DOUBLE -> 8;
+                    default -> -1;
+                };
+                if (width >= 0) {
+                    skip((long) size * width);
+                } else {
+                    for (int i = 0; i < size; i++) {
+                        skipTag(listType, depth + 1);
+                    }
+                }
+            }
+            case COMPOUND -> {
+                checkDepth(depth);
+                byte childType;
+                while ((childType = this.in.readByte()) != END) {
+                    skipName();
+                    skipTag(childType, depth + 1);
+                }
+            }
+            case INT_ARRAY -> skip(readLength() * 4L);
+            case LONG_ARRAY -> skip(readLength() * 8L);
+            default -> throw new IOException("Invalid tag type " + type);
+        }
+    }
+
+    private int readName(@NotNull Filter filter) throws IOException {
+        int length = this.in.readUnsignedShort();
+        if (length > this.name.length) {
+            this.name = new byte[length];
+        }
+        this.in.readFully(this.name, 0, length);
+        return filter.indexOf(this.name, length);
+    }
+
+    private void skipName() throws IOException {
+        skip(this.in.readUnsignedShort());
+    }
+
+    private int readLength() throws IOException {
+        int length = this.in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative length " + length);
+        }
+        return length;
+    }
+
+    private void skip(long bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = this.in.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                // skipBytes may give up early, make sure we are not at the end of the stream
+                this.in.readByte();
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private void checkDepth(int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Reached maximum depth of NBT structure");
+        }
+    }
+
+    private static @NotNull Class<?> tagClass(byte type) throws IOException {
+        return switch (type) {
+            case BYTE -> ByteTag.class;
+            case SHORT -> ShortTag.class;
+            case INT -> IntTag.class;
+            case LONG -> LongTag.class;
+            case FLOAT -> FloatTag.class;
+            case DOUBLE -> DoubleTag.class;
+            case BYTE_ARRAY -> ByteArrayTag.class;
+            case STRING -> StringTag.class;
+            case LIST -> ListTag.class;
+            case COMPOUND -> CompoundTag.class;
+            case INT_ARRAY -> IntArrayTag.class;
+            case LONG_ARRAY -> LongArrayTag.class;
+            default -> throw new IOException("Invalid list type " + type);
+        };
+    }
+
+    /**
+     * Names of the tags to keep inside a compound, and what to keep inside each of those.
+     */
+    private static final class Filter {
+        // keep every tag, used for free form compounds such as block properties
+        private static final Filter ALL = new Filter();
+
+        private String[] names = new String[0];
+        private byte[][] bytes = new byte[0][];
+        private Filter[] children = new Filter[0];
+
+        private @NotNull Filter keep(@NotNull String name) {
+            return keep(name, ALL);
+        }
+
+        private @NotNull Filter keep(@NotNull String name, @NotNull Filter child) {
+            int length = this.names.length;
+            this.names = Arrays.copyOf(this.names, length + 1);
+            this.bytes = Arrays.copyOf(this.bytes, length + 1);
+            this.children = Arrays.copyOf(this.children, length + 1);
+            this.names[length] = name;
+            this.bytes[length] = name.getBytes(StandardCharsets.UTF_8);
+            this.children[length] = child;
+            return this;
+        }
+
+        private @NotNull Filter copy() {
+            Filter copy = new Filter();
+            copy.names = this.names.clone();
+            copy.bytes = this.bytes.clone();
+            copy.children = this.children.clone();
+            return copy;
+        }
+
+        private int indexOf(byte @NotNull [] name, int length) {
+            for (int i = 0; i < this.bytes.length; i++) {
+                if (Arrays.equals(this.bytes[i], 0, this.bytes[i].length, name, 0, length)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
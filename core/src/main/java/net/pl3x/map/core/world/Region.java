@@ -27,28 +27,47 @@ import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import net.pl3x.map.core.Pl3xMap;
+import net.pl3x.map.core.configuration.Config;
+import net.pl3x.map.core.metrics.MetricRegistry;
+import net.pl3x.map.core.util.ByteBufferInputStream;
 import net.querz.mca.CompressionType;
-import net.querz.nbt.io.NBTInputStream;
-import net.querz.nbt.io.NamedTag;
 import net.querz.nbt.tag.CompoundTag;
-import net.querz.nbt.tag.Tag;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class Region {
+    // the location table and the timestamp table are 4KiB each
+    private static final int HEADER_SIZE = 8192;
+    private static final int SECTOR_SIZE = 4096;
+
     private final World world;
     private final int regionX;
     private final int regionZ;
     private final File regionFile;
 
-    private final Chunk[] chunks = new Chunk[32 << 5];
+    private static final int CHUNKS = 32 << 5;
+
+    // replaced as a whole on reset, so scans of neighbouring regions reading this one are never cut short
+    private volatile AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(CHUNKS);
+
+    private volatile ByteBuffer buffer;
+    private volatile BiomeBlend biomeBlend;
+    private volatile BiomeManager.QuartCache quartCache;
 
     private final int hash;
 
@@ -81,61 +100,308 @@ public class Region {
         return (chunkX & 0x1F) + ((chunkZ & 0x1F) << 5);
     }
 
+    /**
+     * Get the cached quart cells of this region, used to look up biomes.
+     *
+     * @return quart cache
+     */
+    public @NotNull BiomeManager.QuartCache getQuartCache() {
+        BiomeManager.QuartCache cache = this.quartCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = this.quartCache;
+                if (cache == null) {
+                    this.quartCache = cache = new BiomeManager.QuartCache(this);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Get the biome blended colors of this region, for the world's current blend radius.
+     *
+     * @return biome blend
+     */
+    public @NotNull BiomeBlend getBiomeBlend() {
+        int radius = getWorld().getConfig().RENDER_BIOME_BLEND;
+        BiomeBlend blend = this.biomeBlend;
+        if (blend == null || blend.getRadius() != radius) {
+            synchronized (this) {
+                blend = this.biomeBlend;
+                if (blend == null || blend.getRadius() != radius) {
+                    this.biomeBlend = blend = new BiomeBlend(this, radius);
+                }
+            }
+        }
+        return blend;
+    }
+
     public @NotNull Chunk getChunk(int chunkX, int chunkZ) {
         int index = getChunkIndex(chunkX, chunkZ);
-        Chunk chunk = this.chunks[index];
+        AtomicReferenceArray<Chunk> chunks = this.chunks;
+        Chunk chunk = chunks.get(index);
         if (chunk == null) {
-            try (RandomAccessFile raf = new RandomAccessFile(getRegionFile(), "r")) {
-                chunk = loadChunk(raf, index);
-            } catch (EOFException | FileNotFoundException ignore) {
-            } catch (IOException e) {
+            try {
+                // use the mapping of a running scan, or map the file just for this chunk so it is not held open
+                ByteBuffer buffer = this.buffer;
+                if (buffer == null) {
+                    buffer = map();
+                }
+                if (buffer != null) {
+                    chunk = loadChunk(buffer, index);
+                }
+            } catch (EOFException e) {
+                // chunk points past the end of the file, it may still be written, so try again next time
+                return new EmptyChunk(getWorld(), this);
+            } catch (NoSuchFileException ignore) {
+            } catch (IOException | InternalError e) {
                 e.printStackTrace();
             }
             if (chunk == null) {
-                return this.chunks[index] = new EmptyChunk(getWorld(), this);
+                chunk = new EmptyChunk(getWorld(), this);
+                chunks.set(index, chunk);
             }
         }
         return chunk;
     }
 
+    /**
+     * Drop the mapped region file and every loaded chunk so the next lookup reads the file again.
+     * <p>
+     * Lookups that are already running finish with what they had, the chunks are swapped out instead of cleared.
+     */
+    public void reset() {
+        this.chunks = new AtomicReferenceArray<>(CHUNKS);
+        this.buffer = null;
+        this.biomeBlend = null;
+    }
+
+    /**
+     * Drop the mapped region file once a scan is done with it. Chunks that are already loaded stay,
+     * later lookups of other chunks map the file only for as long as they need it.
+     * <p>
+     * Java can not unmap a file on demand, the mapping and its file handle go once nothing references the buffer.
+     */
+    public void release() {
+        this.buffer = null;
+    }
+
+    /**
+     * Read the chunk timestamp table from the region file header.
+     *
+     * @return last modified time, in seconds, of each chunk in this region, or null if there is no region file
+     * @throws IOException if the file could not be mapped
+     */
+    public int @Nullable [] getChunkTimestamps() throws IOException {
+        ByteBuffer buffer;
+        try {
+            buffer = mapRegionFile();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (buffer == null) {
+            return null;
+        }
+        int[] timestamps = new int[CHUNKS];
+        for (int index = 0; index < timestamps.length; index++) {
+            timestamps[index] = buffer.getInt(SECTOR_SIZE + (index << 2));
+        }
+        return timestamps;
+    }
+
+    /**
+     * Pull the whole region file into memory ahead of decoding its chunks,
+     * so the threads decoding them do not have to wait on the disk.
+     *
+     * @return size of the region file in bytes
+     * @throws IOException if the file could not be mapped
+     */
+    public long prefetch() throws IOException {
+        ByteBuffer buffer;
+        try {
+            buffer = mapRegionFile();
+        } catch (NoSuchFileException e) {
+            return 0L;
+        }
+        if (buffer == null) {
+            return 0L;
+        }
+        if (buffer instanceof MappedByteBuffer mapped) {
+            mapped.load();
+        }
+        return buffer.capacity();
+    }
+
     public void loadChunks() throws IOException {
-        if (!getRegionFile().exists() || getRegionFile().length() <= 0) {
+        loadChunks(null);
+    }
+
+    /**
+     * Load chunks from the region file.
+     *
+     * @param only indices of the chunks to load, or null to load every chunk
+     * @throws IOException if the file could not be read
+     */
+    public void loadChunks(@Nullable BitSet only) throws IOException {
+        ByteBuffer buffer;
+        try {
+            buffer = mapRegionFile();
+        } catch (NoSuchFileException e) {
             return;
         }
-        try (RandomAccessFile raf = new RandomAccessFile(getRegionFile(), "r")) {
-            for (int index = 0; index < this.chunks.length; index++) {
-                Pl3xMap.api().getRegionProcessor().checkPaused();
-                loadChunk(raf, index);
+        if (buffer == null) {
+            return;
+        }
+
+        if (Config.RENDER_PARALLEL_CHUNK_LOADING && ForkJoinTask.inForkJoinPool()) {
+            // fan the chunk decoding out over the pool we are running in
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(CHUNKS);
+            for (int index = 0; index < CHUNKS; index++) {
+                if (only != null && !only.get(index)) {
+                    continue;
+                }
+                int chunkIndex = index;
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    Pl3xMap.api().getRegionProcessor().checkPaused();
+                    try {
+                        loadChunkOrEmpty(buffer, chunkIndex);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
             }
+            try {
+                ForkJoinTask.invokeAll(tasks);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return;
+        }
+
+        for (int index = 0; index < CHUNKS; index++) {
+            if (only != null && !only.get(index)) {
+                continue;
+            }
+            Pl3xMap.api().getRegionProcessor().checkPaused();
+            loadChunkOrEmpty(buffer, index);
+        }
+    }
+
+    private void loadChunkOrEmpty(@NotNull ByteBuffer buffer, int index) throws IOException {
+        try {
+            loadChunk(buffer, index);
         } catch (EOFException ignore) {
+            // chunk points past the end of the file, leave it to getChunk
         }
     }
 
-    public @NotNull Chunk loadChunk(@NotNull RandomAccessFile raf, int index) throws IOException {
-        raf.seek(index * 4L);
-        int offset = raf.read() << 16;
-        offset |= (raf.read() & 0xFF) << 8;
-        offset |= raf.read() & 0xFF;
-        if (raf.readByte() == 0) {
-            return this.chunks[index] = new EmptyChunk(getWorld(), this);
+    /**
+     * Map the whole region file into memory. The mapping is kept until {@link #release()}
+     * so the chunks of a scan do not have to reopen the file.
+     *
+     * @return mapped region file, or null if the file is too small to contain any chunks
+     * @throws IOException if the file could not be mapped
+     */
+    private @Nullable ByteBuffer mapRegionFile() throws IOException {
+        ByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            synchronized (this) {
+                buffer = this.buffer;
+                if (buffer == null) {
+                    this.buffer = buffer = map();
+                }
+            }
         }
-        raf.seek(4096L * offset + 4); // +4 skip chunk size
+        return buffer;
+    }
 
-        byte compressionTypeByte = raf.readByte();
+    private @Nullable ByteBuffer map() throws IOException {
+        try (FileChannel channel = FileChannel.open(getRegionFile().toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Make sure a mapping reaches far enough, mapping the file again if the server appended to it
+     * after it was mapped.
+     *
+     * @param buffer mapping to check
+     * @param end    end of the bytes to read
+     * @return mapping that reaches the end
+     * @throws IOException if the file does not reach that far either
+     */
+    private @NotNull ByteBuffer reach(@NotNull ByteBuffer buffer, int end) throws IOException {
+        if (end <= buffer.limit()) {
+            return buffer;
+        }
+        synchronized (this) {
+            ByteBuffer current = this.buffer;
+            if (current != null && current.limit() >= end) {
+                // another thread mapped it again already
+                return current;
+            }
+            ByteBuffer mapped = map();
+            if (mapped == null || mapped.limit() < end) {
+                throw new EOFException();
+            }
+            if (current == buffer) {
+                // only replace the mapping of a running scan, a lookup's own mapping is not kept
+                this.buffer = mapped;
+            }
+            return mapped;
+        }
+    }
+
+    public @NotNull Chunk loadChunk(@NotNull ByteBuffer buffer, int index) throws IOException {
+        // 3 bytes sector offset, 1 byte sector count
+        int location = buffer.getInt(index << 2);
+        if ((location & 0xFF) == 0) {
+            return store(index, new EmptyChunk(getWorld(), this));
+        }
+        int position = (location >>> 8) * SECTOR_SIZE;
+        if (position < HEADER_SIZE) {
+            throw new EOFException();
+        }
+        buffer = reach(buffer, position + 5);
+
+        int length = buffer.getInt(position) - 1; // -1 for the compression type byte
+        if (length <= 0) {
+            throw new EOFException();
+        }
+        buffer = reach(buffer, position + 5 + length);
+
+        byte compressionTypeByte = buffer.get(position + 4);
         CompressionType compressionType = CompressionType.getFromID(compressionTypeByte);
         if (compressionType == null) {
             throw new IOException("Invalid compression type " + compressionTypeByte);
         }
 
-        DataInputStream dis = new DataInputStream(new BufferedInputStream(compressionType.decompress(new FileInputStream(raf.getFD()))));
-        NamedTag tag = new NBTInputStream(dis).readTag(Tag.DEFAULT_MAX_DEPTH);
-        if (tag != null && tag.getTag() instanceof CompoundTag compoundTag) {
-            return this.chunks[index] = Chunk.create(getWorld(), this, compoundTag, index).populate();
+        MetricRegistry metrics = Pl3xMap.api().getMetricRegistry();
+        long start = System.nanoTime();
+        ByteBuffer slice = buffer.slice(position + 5, length);
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(compressionType.decompress(new ByteBufferInputStream(slice))));
+        CompoundTag tag = new ChunkTagReader(dis).read();
+        long decoded = System.nanoTime();
+        metrics.record(MetricRegistry.Timer.CHUNK_DECODE, decoded - start);
+        if (tag != null) {
+            Chunk chunk = Chunk.create(getWorld(), this, tag, index).populate();
+            metrics.record(MetricRegistry.Timer.CHUNK_POPULATE, System.nanoTime() - decoded);
+            return store(index, chunk);
         } else {
-            throw new IOException("Invalid data tag: " + (tag == null ? "null" : tag.getName()));
+            throw new IOException("Invalid data tag");
         }
     }
 
+    private @NotNull Chunk store(int index, @NotNull Chunk chunk) {
+        this.chunks.set(index, chunk);
+        return chunk;
+    }
+
     @Override
     public boolean equals(@Nullable Object o) {
         if (this == o) {
@@ -46,6 +46,8 @@ import net.pl3x.map.core.configuration.SpawnLayerConfig;
 import net.pl3x.map.core.configuration.WorldBorderLayerConfig;
 import net.pl3x.map.core.configuration.WorldConfig;
 import net.pl3x.map.core.image.IconImage;
+import net.pl3x.map.core.image.TileCache;
+import net.pl3x.map.core.image.TileHashStore;
 import net.pl3x.map.core.log.Logger;
 import net.pl3x.map.core.markers.Point;
 import net.pl3x.map.core.markers.area.Area;
@@ -85,6 +87,9 @@ public abstract class World extends Keyed {
 
     private final LoadingCache<@NotNull Long, @NotNull Region> regionCache;
     private final RegionModifiedState regionModifiedState;
+    private final ChunkModifiedState chunkModifiedState;
+    private final TileCache tileCache;
+    private final TileHashStore tileHashStore;
     //private final RegionFileWatcher regionFileWatcher;
     private final UpdateMarkerData markerTask;
     private final Map<@NotNull String, Renderer.@NotNull Builder> renderers = new LinkedHashMap<>();
@@ -120,6 +125,9 @@ public abstract class World extends Keyed {
                 .build(this::loadRegion);
 
         this.regionModifiedState = new RegionModifiedState(this);
+        this.chunkModifiedState = new ChunkModifiedState(this);
+        this.tileCache = new TileCache(this);
+        this.tileHashStore = new TileHashStore(this);
         //this.regionFileWatcher = new RegionFileWatcher(this);
         this.markerTask = new UpdateMarkerData(this);
     }
@@ -178,6 +186,7 @@ public abstract class World extends Keyed {
     }
 
     public void cleanup() {
+        this.tileCache.flush();
         this.regionCache.invalidateAll();
         getRegionModifiedState().save();
     }
@@ -206,6 +215,18 @@ public abstract class World extends Keyed {
         return this.regionModifiedState;
     }
 
+    public @NotNull ChunkModifiedState getChunkModifiedState() {
+        return this.chunkModifiedState;
+    }
+
+    public @NotNull TileCache getTileCache() {
+        return this.tileCache;
+    }
+
+    public @NotNull TileHashStore getTileHashStore() {
+        return this.tileHashStore;
+    }
+
     //public @NotNull RegionFileWatcher getRegionFileWatcher() {
     //    return this.regionFileWatcher;
     //}
@@ -295,6 +316,22 @@ public abstract class World extends Keyed {
         return getConfig().VISIBLE_AREAS.isEmpty();
     }
 
+    /**
+     * Report a chunk the server saved or unloaded so it gets re-rendered.
+     * <p>
+     * Platforms call this from their chunk events, which keeps the map up
+     * to date without scanning the region directory.
+     *
+     * @param chunkX chunk X coordinate
+     * @param chunkZ chunk Z coordinate
+     */
+    public void markChunkDirty(int chunkX, int chunkZ) {
+        if (!isEnabled() || !visibleChunk(chunkX, chunkZ)) {
+            return;
+        }
+        Pl3xMap.api().getRegionProcessor().markChunkDirty(this, chunkX, chunkZ);
+    }
+
     public boolean visibleChunk(int chunkX, int chunkZ) {
         for (Area area : getConfig().VISIBLE_AREAS) {
             if (area.containsChunk(chunkX, chunkZ)) {
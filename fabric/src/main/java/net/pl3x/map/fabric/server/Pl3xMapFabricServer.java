@@ -30,6 +30,7 @@ import java.util.Map;
 import java.util.UUID;
 import net.fabricmc.api.DedicatedServerModInitializer;
 import net.fabricmc.fabric.api.entity.event.v1.ServerPlayerEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
@@ -126,6 +127,13 @@ public class Pl3xMapFabricServer extends Pl3xMap implements DedicatedServerModIn
             Pl3xMap.api().getWorldRegistry().unregister(name);
         });
 
+        ServerChunkEvents.CHUNK_UNLOAD.register((level, chunk) -> {
+            World world = Pl3xMap.api().getWorldRegistry().get(level.dimension().location().toString());
+            if (world != null) {
+                world.markChunkDirty(chunk.getPos().x, chunk.getPos().z);
+            }
+        });
+
         ServerLifecycleEvents.SERVER_STARTED.register(server -> {
             this.server = server;
             this.adventure = FabricServerAudiences.of(this.server);
@@ -187,6 +195,11 @@ public class Pl3xMapFabricServer extends Pl3xMap implements DedicatedServerModIn
         return SharedConstants.getCurrentVersion().getName();
     }
 
+    @Override
+    public double getAverageTickTime() {
+        return this.server == null ? -1.0D : this.server.getAverageTickTime();
+    }
+
     @Override
     public @NotNull AudienceProvider adventure() {
         if (this.adventure == null) {
@@ -50,6 +50,7 @@ import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.common.capabilities.RegisterCapabilitiesEvent;
 import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.level.ChunkDataEvent;
 import net.minecraftforge.event.level.LevelEvent;
 import net.minecraftforge.event.server.ServerStartedEvent;
 import net.minecraftforge.event.server.ServerStoppingEvent;
@@ -154,6 +155,17 @@ public class Pl3xMapForge extends Pl3xMap {
         Pl3xMap.api().getWorldRegistry().unregister(name);
     }
 
+    @SubscribeEvent
+    public void onChunkSave(ChunkDataEvent.@NotNull Save event) {
+        if (!(event.getLevel() instanceof ServerLevel level)) {
+            return;
+        }
+        World world = Pl3xMap.api().getWorldRegistry().get(level.dimension().location().toString());
+        if (world != null) {
+            world.markChunkDirty(event.getChunk().getPos().x, event.getChunk().getPos().z);
+        }
+    }
+
     @SubscribeEvent
     public void onServerStarted(@NotNull ServerStartedEvent event) {
         this.server = event.getServer();
@@ -224,6 +236,11 @@ public class Pl3xMapForge extends Pl3xMap {
         return SharedConstants.getCurrentVersion().getName();
     }
 
+    @Override
+    public double getAverageTickTime() {
+        return this.server == null ? -1.0D : this.server.getAverageTickTime();
+    }
+
     @Override
     public @NotNull AudienceProvider adventure() {
         if (this.adventure == null) {